@@ -0,0 +1,204 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2016 - 2024, Lorenzo Magni.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.mbcore;
+
+import com.google.common.base.Preconditions;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded cache of deserialized components, keyed by text and {@link TagResolver} identity.
+ * Lookups do not lock. When the cache grows past its size, the least recently used eighth of it is evicted at once.
+ * Resolvers are compared by identity, so a resolver built for every call, such as one holding a placeholder value,
+ * never hits: such texts should be deserialized without caching.
+ */
+public final class ComponentCache {
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile int maxSize;
+
+    ComponentCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Return the cached component of a text, deserializing and caching it if missing.
+     *
+     * @param text        The text.
+     * @param tagResolver The {@link TagResolver} used to deserialize the text, compared by identity.
+     * @param loader      The function deserializing the text.
+     * @return The component.
+     */
+    @NotNull
+    Component get(@NotNull String text, @Nullable TagResolver tagResolver, @NotNull BiFunction<String, TagResolver, Component> loader) {
+        if (maxSize == 0) return loader.apply(text, tagResolver);
+
+        Key key = new Key(text, tagResolver);
+        Entry entry = entries.get(key);
+
+        if (entry != null) {
+            entry.lastAccess = clock.incrementAndGet();
+            hits.increment();
+            return entry.component;
+        }
+
+        misses.increment();
+        Component component = loader.apply(text, tagResolver);
+        entries.put(key, new Entry(component, clock.incrementAndGet()));
+
+        if (entries.size() > maxSize) evict();
+        return component;
+    }
+
+    /**
+     * Set the maximum number of cached components.
+     *
+     * @param maxSize The maximum number of components, 0 to disable the cache.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public void setMaxSize(int maxSize) {
+        Preconditions.checkArgument(maxSize >= 0, "Max size cannot be negative");
+
+        this.maxSize = maxSize;
+        if (maxSize == 0) entries.clear();
+        else if (entries.size() > maxSize) evict();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Remove every cached component. Metrics are kept.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    @NotNull
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), maxSize);
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+
+        try {
+            // Components added by other threads while evicting are evicted by the next pass
+            int maxSize;
+            while ((maxSize = this.maxSize) > 0 && entries.size() > maxSize) {
+                // Access times are copied first, as hits keep updating them while sorting
+                List<Access> snapshot = new ArrayList<>(entries.size());
+                entries.forEach((key, entry) -> snapshot.add(new Access(key, entry, entry.lastAccess)));
+                snapshot.sort(Comparator.comparingLong(Access::time));
+
+                int count = Math.min(snapshot.size() - maxSize + maxSize / 8, snapshot.size());
+                for (int i = 0; i < count; i++) {
+                    Access eldest = snapshot.get(i);
+                    if (entries.remove(eldest.key(), eldest.entry())) evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Metrics of a {@link ComponentCache}.
+     *
+     * @param hits      The number of lookups that found a cached component.
+     * @param misses    The number of lookups that deserialized the text.
+     * @param evictions The number of components evicted to make room.
+     * @param size      The number of cached components.
+     * @param maxSize   The maximum number of cached components.
+     */
+    public record Stats(long hits, long misses, long evictions, int size, int maxSize) {
+
+        /**
+         * @return The ratio of lookups that found a cached component, or 0 if there were no lookups.
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private static final class Key {
+        private final String text;
+        private final TagResolver tagResolver;
+        private final int hash;
+
+        private Key(@NotNull String text, @Nullable TagResolver tagResolver) {
+            this.text = text;
+            this.tagResolver = tagResolver;
+            this.hash = 31 * text.hashCode() + System.identityHashCode(tagResolver);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+
+            return tagResolver == key.tagResolver && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private record Access(@NotNull Key key, @NotNull Entry entry, long time) {
+    }
+
+    private static final class Entry {
+        private final Component component;
+        private volatile long lastAccess;
+
+        private Entry(@NotNull Component component, long lastAccess) {
+            this.component = component;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
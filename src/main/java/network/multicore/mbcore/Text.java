@@ -51,6 +51,8 @@ public class Text {
     private static final MiniMessage miniMessage = MiniMessage.miniMessage();
     private static final LegacyComponentSerializer legacySerializer = LegacyComponentSerializer.legacyAmpersand();
     private static final Pattern STRIP_COLOR_PATTERN = Pattern.compile("(?i)[§&][0-9A-FK-ORX]");
+    private static final ComponentCache componentCache = new ComponentCache(1024);
+    private static final ThreadLocal<Boolean> uncached = ThreadLocal.withInitial(() -> false);
 
     /**
      * Concatenates elements of a string array into a single string starting from a specific offset.
@@ -424,6 +426,8 @@ public class Text {
 
     /**
      * Deserializes a MiniMessage text.
+     * The component is cached by text and {@link TagResolver} identity, unless called within {@link #uncached(Runnable)}.
+     * A resolver built for every call never matches a cached component, so texts deserialized with one should not be cached.
      *
      * @param text        The text to deserialize.
      * @param tagResolver The {@link TagResolver} for any additional tags to handle.
@@ -431,9 +435,23 @@ public class Text {
      * null if the input text is null.
      */
     public static Component deserialize(String text, TagResolver tagResolver) {
+        return deserialize(text, tagResolver, !uncached.get());
+    }
+
+    /**
+     * Deserializes a MiniMessage text.
+     *
+     * @param text        The text to deserialize.
+     * @param tagResolver The {@link TagResolver} for any additional tags to handle.
+     * @param cache       Whether to cache the component. Texts that are unique per call, or deserialized with a
+     *                    {@link TagResolver} built for every call, should not be cached.
+     * @return The deserialized text.
+     * null if the input text is null.
+     */
+    public static Component deserialize(String text, TagResolver tagResolver, boolean cache) {
         if (text == null) return null;
-        if (tagResolver == null) return miniMessage.deserialize(toMiniMessage(text));
-        return miniMessage.deserialize(text, tagResolver);
+        if (!cache) return parse(text, tagResolver);
+        return componentCache.get(text, tagResolver, Text::parse);
     }
 
     /**
@@ -447,6 +465,35 @@ public class Text {
         return deserialize(text, null);
     }
 
+    /**
+     * Runs an action without caching the texts it deserializes on the current thread.
+     * Any send or broadcast method can be called within it, for texts that are unique per call.
+     *
+     * @param action The action to run.
+     * @throws NullPointerException if the action is null.
+     */
+    public static void uncached(@NotNull Runnable action) {
+        Preconditions.checkNotNull(action, "Action cannot be null");
+
+        boolean previous = uncached.get();
+        uncached.set(true);
+
+        try {
+            action.run();
+        } finally {
+            uncached.set(previous);
+        }
+    }
+
+    /**
+     * Returns the cache of deserialized texts, to resize it or read its metrics.
+     *
+     * @return The component cache.
+     */
+    public static ComponentCache getComponentCache() {
+        return componentCache;
+    }
+
     /**
      * Deserializes MiniMessage texts.
      *
@@ -5768,4 +5815,9 @@ public class Text {
     public <P extends Collection<String>> void broadcastTitle(String title, String subtitle, @NotNull P neededPermissions, @NotNull CommandSender sender, @NotNull String... permissions) {
         broadcastTitle(title, subtitle, null, null, null, null, neededPermissions, sender, permissions);
     }
+
+    private static Component parse(String text, TagResolver tagResolver) {
+        if (tagResolver == null) return miniMessage.deserialize(toMiniMessage(text));
+        return miniMessage.deserialize(text, tagResolver);
+    }
 }
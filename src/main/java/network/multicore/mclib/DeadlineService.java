@@ -0,0 +1,87 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2019 - 2024, Lorenzo Magni.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.mclib;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single daemon thread checking the deadlines of every {@link Watchdog}.
+ * The thread sleeps until the earliest deadline; feeding a watchdog only moves its deadline, which is checked again when the old one is reached.
+ */
+final class DeadlineService {
+    private static final DeadlineService INSTANCE = new DeadlineService();
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+
+    private DeadlineService() {
+        Thread thread = new Thread(this::run, "Watchdog Deadline Service");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static DeadlineService getInstance() {
+        return INSTANCE;
+    }
+
+    void schedule(Watchdog watchdog, long deadlineNanos) {
+        queue.add(new Deadline(watchdog, deadlineNanos));
+    }
+
+    private void run() {
+        while (true) {
+            Deadline deadline;
+
+            try {
+                deadline = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            try {
+                deadline.watchdog.check();
+            } catch (Throwable ignored) {
+                // A broken watchdog must not stop the others
+            }
+        }
+    }
+
+    private record Deadline(Watchdog watchdog, long deadlineNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o instanceof Deadline other) return Long.compare(deadlineNanos, other.deadlineNanos);
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
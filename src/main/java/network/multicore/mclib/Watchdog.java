@@ -27,20 +27,26 @@
 
 package network.multicore.mclib;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class Watchdog implements Runnable {
     private final Runnable listener;
     private final long expirationMillis;
-    private final Thread wdThread;
     private final Lock expirationDateLock;
+    private final Condition death;
 
-    private long millisUntilExpiration;
-    private boolean isPaused;
+    private long deadlineNanos;
+    private long nanosUntilExpiration;
+    private boolean isPaused = true;
+    private boolean isQueued;
+    private boolean isDead;
 
     /**
      * Creates an instance of the Watchdog
+     * Every watchdog is checked by a single shared thread, which only wakes up when a deadline is reached.
      *
      * @param listener         called when the watchdog dies
      * @param expirationMillis lifetime in milliseconds of the watchdog
@@ -48,11 +54,11 @@ public class Watchdog implements Runnable {
     public Watchdog(Runnable listener, long expirationMillis) {
         this.listener = listener;
         this.expirationMillis = expirationMillis;
-        this.millisUntilExpiration = expirationMillis;
+        this.nanosUntilExpiration = TimeUnit.MILLISECONDS.toNanos(expirationMillis);
 
         expirationDateLock = new ReentrantLock();
-        wdThread = new Thread(this);
-        wdThread.start();
+        death = expirationDateLock.newCondition();
+        setEnabled(true);
     }
 
     /**
@@ -61,30 +67,45 @@ public class Watchdog implements Runnable {
      */
     public void feed() {
         expirationDateLock.lock();
-        millisUntilExpiration = expirationMillis;
-        expirationDateLock.unlock();
+        try {
+            nanosUntilExpiration = TimeUnit.MILLISECONDS.toNanos(expirationMillis);
+            deadlineNanos = System.nanoTime() + nanosUntilExpiration;
+        } finally {
+            expirationDateLock.unlock();
+        }
     }
 
     /**
-     * Kill the watchdog interrupting its thread.
+     * Kill the watchdog. The listener will never be called.
      */
     public void kill() {
-        setEnabled(false);
-        wdThread.interrupt();
+        expirationDateLock.lock();
+        try {
+            isPaused = true;
+            isDead = true;
+            death.signalAll();
+        } finally {
+            expirationDateLock.unlock();
+        }
     }
 
     /**
-     * Get the current timer value in seconds.
+     * Get the current timer value in milliseconds.
      *
      * @return The current expiration time in milliseconds
      */
     public long getTimer() {
-        return millisUntilExpiration;
+        expirationDateLock.lock();
+        try {
+            if (isDead) return 0;
+            return TimeUnit.NANOSECONDS.toMillis(isPaused ? nanosUntilExpiration : Math.max(deadlineNanos - System.nanoTime(), 0));
+        } finally {
+            expirationDateLock.unlock();
+        }
     }
 
-
     /**
-     * Return the expiration time in seconds.
+     * Return the expiration time in milliseconds.
      *
      * @return The expiration time in milliseconds
      */
@@ -98,7 +119,12 @@ public class Watchdog implements Runnable {
      * @return True if enabled, False if disabled
      */
     public boolean isEnabled() {
-        return !isPaused;
+        expirationDateLock.lock();
+        try {
+            return !isPaused;
+        } finally {
+            expirationDateLock.unlock();
+        }
     }
 
     /**
@@ -109,39 +135,82 @@ public class Watchdog implements Runnable {
      */
     public void setEnabled(final boolean enabled) {
         expirationDateLock.lock();
-        isPaused = !enabled;
-        expirationDateLock.unlock();
+        try {
+            if (isDead || enabled == !isPaused) return;
+
+            if (enabled) {
+                isPaused = false;
+                deadlineNanos = System.nanoTime() + nanosUntilExpiration;
+
+                if (!isQueued) {
+                    isQueued = true;
+                    DeadlineService.getInstance().schedule(this, deadlineNanos);
+                }
+            } else {
+                isPaused = true;
+                nanosUntilExpiration = Math.max(deadlineNanos - System.nanoTime(), 0);
+            }
+        } finally {
+            expirationDateLock.unlock();
+        }
     }
 
     /**
-     * Return true if the watchdog thread is alive.
+     * Return true if the watchdog has neither expired nor been killed.
      *
      * @return True if the watchdog is alive, False if the watchdog is dead
      */
     public boolean isAlive() {
-        return wdThread.isAlive();
+        expirationDateLock.lock();
+        try {
+            return !isDead;
+        } finally {
+            expirationDateLock.unlock();
+        }
     }
 
     /**
-     * The watchdog thread behavior.
+     * Block until the watchdog dies, either because it expired or because it was killed.
+     * Deadlines are checked by the {@link DeadlineService}, which also calls the listener, so running a watchdog
+     * does not start another countdown and never calls the listener a second time.
      */
     @Override
     public void run() {
-        while (millisUntilExpiration > 0) {
-            try {
-                expirationDateLock.lock();
+        expirationDateLock.lock();
+        try {
+            while (!isDead) death.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            expirationDateLock.unlock();
+        }
+    }
 
-                if (!isPaused) {
-                    millisUntilExpiration -= 5;
-                }
-                expirationDateLock.unlock();
+    /**
+     * Called by the {@link DeadlineService} when a deadline of this watchdog is reached.
+     * The watchdog dies if it has not been fed since, otherwise it is checked again at its new deadline.
+     */
+    void check() {
+        expirationDateLock.lock();
+        try {
+            if (isDead || isPaused) {
+                isQueued = false;
+                return;
+            }
 
-                Thread.sleep(5);
-            } catch (InterruptedException e) {
+            if (deadlineNanos - System.nanoTime() > 0) {
+                DeadlineService.getInstance().schedule(this, deadlineNanos);
                 return;
             }
+
+            isQueued = false;
+            isDead = true;
+            death.signalAll();
+        } finally {
+            expirationDateLock.unlock();
         }
 
-        listener.run();
+        // The listener runs on its own virtual thread so that a slow listener does not delay the other watchdogs
+        Thread.ofVirtual().name("Watchdog Listener").start(listener);
     }
-}
\ No newline at end of file
+}
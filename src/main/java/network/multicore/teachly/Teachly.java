@@ -34,10 +34,20 @@ import dev.dejvokep.boostedyaml.settings.dumper.DumperSettings;
 import dev.dejvokep.boostedyaml.settings.general.GeneralSettings;
 import dev.dejvokep.boostedyaml.settings.loader.LoaderSettings;
 import dev.dejvokep.boostedyaml.settings.updater.UpdaterSettings;
+import network.multicore.mbcore.Text;
+import network.multicore.teachly.concurrent.ComputePool;
+import network.multicore.teachly.concurrent.ExecutorTimer;
+import network.multicore.teachly.concurrent.Scheduler;
+import network.multicore.teachly.concurrent.TaskTimer;
+import network.multicore.teachly.concurrent.TickScheduler;
+import network.multicore.teachly.concurrent.TimingWheel;
+import network.multicore.teachly.concurrent.VirtualThreadExecutor;
 import network.multicore.teachly.event.EventRegistry;
 import network.multicore.teachly.js.Script;
+import network.multicore.teachly.js.StallDetector;
 import network.multicore.teachly.js.exceptions.JSException;
 import network.multicore.teachly.utils.Logger;
+import network.multicore.teachly.utils.StructuredLog;
 import org.bukkit.event.Event;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
@@ -50,14 +60,22 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 public class Teachly extends JavaPlugin {
-    private final Logger logger = Logger.createLogger(getLogger());
+    private final Logger logger = Logger.createLogger(getComponentLogger());
     private final File scriptsDir = new File(getDataFolder(), "scripts");
+    private final File recordingsDir = new File(getDataFolder(), "recordings");
+    private final File logsDir = new File(getDataFolder(), "logs");
     private final File configFile = new File(getDataFolder(), "config.yml");
     private YamlDocument config;
     private final List<Script> scripts = new ArrayList<>();
     private EventRegistry eventRegistry;
+    private TickScheduler tickScheduler;
+    private Scheduler scheduler;
+    private ComputePool computePool;
+    private volatile StallDetector stallDetector;
+    private volatile StructuredLog structuredLog;
     private static Teachly instance;
 
     public Teachly() {
@@ -87,11 +105,22 @@ public class Teachly extends JavaPlugin {
         } catch (IOException e) {
             logger.error("Could not load config. {}", e.getMessage());
             onDisable();
+            return;
         }
+
+        configureLogger();
+        Text.getComponentCache().setMaxSize(Math.max(config.getInt("text-cache-size", 1024), 0));
     }
 
     @Override
     public void onEnable() {
+        tickScheduler = new TickScheduler(this, Math.max(config.getLong("main-thread-budget-ms", 5L), 1L), TimeUnit.MILLISECONDS);
+        tickScheduler.start();
+        scheduler = createScheduler();
+        computePool = new ComputePool(Math.max(config.getInt("compute-parallelism", 0), 0));
+        stallDetector = new StallDetector(config.getLong("stall-threshold-ms", 50L), TimeUnit.MILLISECONDS);
+        openStructuredLog();
+
         loadScripts(scriptsDir, scripts);
         logger.info("<dark_green>Loaded <green>{} <dark_green>scripts", scripts.size());
 
@@ -103,9 +132,12 @@ public class Teachly extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (eventRegistry != null) eventRegistry.beginBatch();
+
         scripts.forEach(s -> {
             try {
                 s.close();
+                logActivity("script_unloaded", "script", s.getId());
             } catch (IOException e) {
                 logger.warn("An error occurred while closing script {}: {}", s.getId(), e.getMessage());
             }
@@ -113,9 +145,15 @@ public class Teachly extends JavaPlugin {
         scripts.clear();
 
         if (eventRegistry != null) eventRegistry.close();
+        if (tickScheduler != null) tickScheduler.stop();
+        if (scheduler != null) scheduler.shutdown();
+        if (computePool != null) computePool.shutdown(5, TimeUnit.SECONDS);
+        if (stallDetector != null) stallDetector.close();
+        closeStructuredLog();
 
         System.gc();
         logger.info("<red>{} disabled!", getName());
+        logger.disableAsync();
     }
 
     public static Teachly getInstance() {
@@ -127,15 +165,66 @@ public class Teachly extends JavaPlugin {
         return config;
     }
 
+    /**
+     * Reload the config and the scripts.
+     * Settings of the logger, the text cache, the stall detector, the structured log and the scripts take effect immediately,
+     * the scheduler settings on the next restart.
+     */
     public void reload() {
-        onDisable();
-        onEnable();
+        try {
+            config.reload();
+        } catch (IOException e) {
+            logger.error("Could not reload config, keeping the current one. {}", e.getMessage());
+        }
+
+        eventRegistry.beginBatch();
+
+        try {
+            closeScripts();
+            scripts.clear();
+
+            configureLogger();
+            Text.getComponentCache().setMaxSize(Math.max(config.getInt("text-cache-size", 1024), 0));
+
+            stallDetector.close();
+            stallDetector = new StallDetector(config.getLong("stall-threshold-ms", 50L), TimeUnit.MILLISECONDS);
+
+            closeStructuredLog();
+            openStructuredLog();
+
+            loadScripts(scriptsDir, scripts);
+            logger.info("<dark_green>Loaded <green>{} <dark_green>scripts", scripts.size());
+
+            evaluateScripts();
+        } finally {
+            eventRegistry.endBatch();
+        }
     }
 
     public EventRegistry eventRegistry() {
         return eventRegistry;
     }
 
+    public TickScheduler tickScheduler() {
+        return tickScheduler;
+    }
+
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    public ComputePool computePool() {
+        return computePool;
+    }
+
+    public StallDetector stallDetector() {
+        return stallDetector;
+    }
+
+    public File getRecordingsDir() {
+        return recordingsDir;
+    }
+
     public List<Script> getScripts() {
         return scripts;
     }
@@ -147,8 +236,10 @@ public class Teachly extends JavaPlugin {
     public void evaluateScript(Script script) {
         try {
             script.evaluate();
+            logActivity("script_loaded", "script", script.getId());
         } catch (JSException e) {
-            logger.warn(e.getMessage());
+            logger.warn("{}", e.getMessage());
+            logActivity("error", "script", script.getId(), "stage", "evaluation", "message", e.getMessage());
         }
     }
 
@@ -159,11 +250,29 @@ public class Teachly extends JavaPlugin {
     public void closeScript(Script script) {
         try {
             script.close();
+            logActivity("script_unloaded", "script", script.getId());
         } catch (IOException e) {
-            logger.warn(e.getMessage());
+            logger.warn("{}", e.getMessage());
         }
     }
 
+    /**
+     * Write a record to the structured log, if it is enabled.
+     *
+     * @param type       The type of the record.
+     * @param properties Alternating property names and values.
+     * @see StructuredLog#write(String, Object...)
+     */
+    public void logActivity(@NotNull String type, Object... properties) {
+        StructuredLog structuredLog = this.structuredLog;
+        if (structuredLog != null) structuredLog.write(type, properties);
+    }
+
+    @Nullable
+    public StructuredLog structuredLog() {
+        return structuredLog;
+    }
+
     private void initStorage() throws IOException {
         if (!getDataFolder().exists() || !getDataFolder().isDirectory()) {
             if (!getDataFolder().mkdir()) {
@@ -199,6 +308,77 @@ public class Teachly extends JavaPlugin {
         }
     }
 
+    private void openStructuredLog() {
+        if (!config.getBoolean("structured-log.enabled", false)) return;
+
+        int maxFileSize = (int) Math.min(Math.max(config.getLong("structured-log.max-file-size-mb", 16L), 1L) * 1024 * 1024, Integer.MAX_VALUE);
+
+        try {
+            structuredLog = new StructuredLog(logsDir, "activity", maxFileSize, Math.max(config.getInt("structured-log.max-files", 10), 1));
+        } catch (IOException e) {
+            logger.error("Could not open the structured log. {}", e.getMessage());
+        }
+    }
+
+    private void closeStructuredLog() {
+        StructuredLog structuredLog = this.structuredLog;
+        if (structuredLog == null) return;
+
+        this.structuredLog = null;
+
+        try {
+            structuredLog.close();
+        } catch (IOException e) {
+            logger.warn("An error occurred while closing the structured log: {}", e.getMessage());
+        }
+    }
+
+    private void configureLogger() {
+        logger.setDuplicateWindow(Math.max(config.getLong("logging.duplicate-window-ms", 5000L), 0L), TimeUnit.MILLISECONDS);
+
+        if (!config.getBoolean("logging.async", true)) {
+            logger.disableAsync();
+            return;
+        }
+
+        Logger.OverflowPolicy overflowPolicy;
+        try {
+            overflowPolicy = Logger.OverflowPolicy.valueOf(config.getString("logging.overflow-policy", "drop").toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown logging overflow policy {}, using drop", config.getString("logging.overflow-policy"));
+            overflowPolicy = Logger.OverflowPolicy.DROP;
+        }
+
+        logger.enableAsync(Math.max(config.getInt("logging.buffer-size", 8192), 2), overflowPolicy);
+    }
+
+    private Scheduler createScheduler() {
+        String backend = config.getString("scheduler-backend", "platform").toLowerCase(Locale.US);
+        TaskTimer timer = createTaskTimer();
+
+        return switch (backend) {
+            case "virtual" -> new Scheduler(new VirtualThreadExecutor("Teachly Scheduler Worker"), timer);
+            case "platform" -> new Scheduler(Math.max(config.getInt("scheduler-pool-size", 2), 1), timer);
+            default -> {
+                logger.warn("Unknown scheduler backend {}, using platform", backend);
+                yield new Scheduler(Math.max(config.getInt("scheduler-pool-size", 2), 1), timer);
+            }
+        };
+    }
+
+    private TaskTimer createTaskTimer() {
+        String timer = config.getString("scheduler-timer", "executor").toLowerCase(Locale.US);
+
+        return switch (timer) {
+            case "wheel" -> new TimingWheel(Math.max(config.getLong("scheduler-wheel-tick-ms", 10L), 1L), TimeUnit.MILLISECONDS, 512, "Teachly Scheduler Timer");
+            case "executor" -> new ExecutorTimer("Teachly Scheduler Timer");
+            default -> {
+                logger.warn("Unknown scheduler timer {}, using executor", timer);
+                yield new ExecutorTimer("Teachly Scheduler Timer");
+            }
+        };
+    }
+
     private void loadScripts(File dir, List<Script> scripts) {
         try {
             File[] files = dir.listFiles();
@@ -220,7 +400,7 @@ public class Teachly extends JavaPlugin {
             }
 
         } catch (Exception e) {
-            logger.warn(e.getMessage());
+            logger.warn("{}", e.getMessage());
         }
     }
 
@@ -1,14 +1,39 @@
 package network.multicore.teachly;
 
 import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.tree.LiteralCommandNode;
 import dev.dejvokep.boostedyaml.YamlDocument;
 import io.papermc.paper.command.brigadier.CommandSourceStack;
 import io.papermc.paper.command.brigadier.Commands;
+import network.multicore.mbcore.ComponentCache;
 import network.multicore.mbcore.Text;
+import network.multicore.teachly.concurrent.Histogram;
+import network.multicore.teachly.concurrent.ScheduledTask;
+import network.multicore.teachly.concurrent.Scheduler;
+import network.multicore.teachly.concurrent.SchedulerMetrics;
+import network.multicore.teachly.concurrent.TaskPriority;
+import network.multicore.teachly.event.EventReplay;
+import network.multicore.teachly.event.RecordedEvent;
+import network.multicore.teachly.js.Script;
+import network.multicore.teachly.utils.Logger;
+import network.multicore.teachly.utils.TokenBucket;
 import org.bukkit.command.CommandSender;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 public class TeachlyCommand {
+    private static final DateTimeFormatter RECORDING_NAME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
     public static final LiteralCommandNode<CommandSourceStack> command = Commands.literal("teachly")
             .then(Commands.literal("reload").executes(ctx -> {
                 Teachly plugin = Teachly.getInstance();
@@ -26,5 +51,188 @@ public class TeachlyCommand {
 
                 return Command.SINGLE_SUCCESS;
             }))
+            .then(Commands.literal("record")
+                    .then(Commands.literal("start").executes(ctx -> {
+                        Teachly plugin = Teachly.getInstance();
+                        YamlDocument config = plugin.config();
+
+                        CommandSender sender = ctx.getSource().getSender();
+                        if (!sender.hasPermission("teachly.record")) {
+                            Text.send(config.getString("messages.insufficient-perms"), sender);
+                            return Command.SINGLE_SUCCESS;
+                        }
+
+                        if (plugin.eventRegistry().isRecording()) {
+                            Text.send(config.getString("messages.record-already-running"), sender);
+                            return Command.SINGLE_SUCCESS;
+                        }
+
+                        File file = new File(plugin.getRecordingsDir(), LocalDateTime.now().format(RECORDING_NAME) + ".evlog");
+
+                        try {
+                            plugin.eventRegistry().startRecording(file);
+                            Text.send(config.getString("messages.record-started").replace("{file}", file.getName()), sender);
+                        } catch (IOException e) {
+                            Text.send(config.getString("messages.record-error").replace("{error}", String.valueOf(e.getMessage())), sender);
+                        }
+
+                        return Command.SINGLE_SUCCESS;
+                    }))
+                    .then(Commands.literal("stop").executes(ctx -> {
+                        Teachly plugin = Teachly.getInstance();
+                        YamlDocument config = plugin.config();
+
+                        CommandSender sender = ctx.getSource().getSender();
+                        if (!sender.hasPermission("teachly.record")) {
+                            Text.send(config.getString("messages.insufficient-perms"), sender);
+                            return Command.SINGLE_SUCCESS;
+                        }
+
+                        long events = plugin.eventRegistry().stopRecording();
+                        Text.send(config.getString("messages.record-stopped").replace("{events}", String.valueOf(events)), sender);
+
+                        return Command.SINGLE_SUCCESS;
+                    })))
+            .then(Commands.literal("replay")
+                    .then(Commands.argument("file", StringArgumentType.word())
+                            .executes(ctx -> replay(ctx.getSource().getSender(), StringArgumentType.getString(ctx, "file"), null))
+                            .then(Commands.argument("scripts", StringArgumentType.greedyString())
+                                    .executes(ctx -> replay(ctx.getSource().getSender(), StringArgumentType.getString(ctx, "file"), StringArgumentType.getString(ctx, "scripts"))))))
+            .then(Commands.literal("stats").executes(ctx -> {
+                Teachly plugin = Teachly.getInstance();
+                YamlDocument config = plugin.config();
+
+                CommandSender sender = ctx.getSource().getSender();
+                if (!sender.hasPermission("teachly.stats")) {
+                    Text.send(config.getString("messages.insufficient-perms"), sender);
+                    return Command.SINGLE_SUCCESS;
+                }
+
+                Text.uncached(() -> sendStats(plugin, sender));
+                return Command.SINGLE_SUCCESS;
+            }))
             .build();
+
+    private static int replay(CommandSender sender, String name, String scriptIds) {
+        Teachly plugin = Teachly.getInstance();
+        YamlDocument config = plugin.config();
+
+        if (!sender.hasPermission("teachly.replay")) {
+            Text.send(config.getString("messages.insufficient-perms"), sender);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        File file = new File(plugin.getRecordingsDir(), name.endsWith(".evlog") ? name : name + ".evlog");
+        if (!file.isFile() || !file.getParentFile().equals(plugin.getRecordingsDir())) {
+            Text.send(config.getString("messages.replay-not-found").replace("{file}", name), sender);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        Set<Script> scripts = null;
+        if (scriptIds != null) {
+            scripts = new HashSet<>();
+
+            for (String id : scriptIds.split("\\s+")) {
+                Script script = plugin.getScripts().stream().filter(s -> s.getId().equals(id)).findFirst().orElse(null);
+                if (script == null) {
+                    Text.send(config.getString("messages.replay-unknown-script").replace("{script}", id), sender);
+                    return Command.SINGLE_SUCCESS;
+                }
+
+                scripts.add(script);
+            }
+        }
+
+        Set<Script> targets = scripts;
+        EventReplay replay = new EventReplay(plugin.eventRegistry(), plugin.tickScheduler());
+        Text.send(config.getString("messages.replay-started").replace("{file}", file.getName()), sender);
+
+        // Reading the log blocks on I/O, so it runs on the scheduler rather than on the compute pool
+        CompletableFuture<List<RecordedEvent>> events = new CompletableFuture<>();
+        plugin.scheduler().scheduleTask(() -> {
+            try {
+                events.complete(EventReplay.read(file));
+            } catch (Throwable t) {
+                events.completeExceptionally(t);
+            }
+        }, TaskPriority.LOW);
+
+        events.thenCompose(recorded -> replay.replay(recorded, targets))
+                // Read errors complete the future on a scheduler thread, so the reply hops back to the main thread
+                .whenCompleteAsync((report, t) -> {
+                    if (t != null) {
+                        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+
+                        Text.send(config.getString("messages.replay-error").replace("{error}", String.valueOf(cause.getMessage())), sender);
+                        return;
+                    }
+
+                    Text.uncached(() -> {
+                        Text.send("<dark_green>Replayed <green>%d</green> events (<green>%d</green> skipped) in <green>%.1f ms</green>, recorded over <green>%.1f s</green>: <green>%.0f</green> events/s"
+                                .formatted(report.events(), report.skipped(), report.replayNanos() / 1e6, report.recordedNanos() / 1e9, report.eventsPerSecond()), sender);
+
+                        for (EventReplay.CallbackReport callback : report.callbacks()) {
+                            Text.send("<gray>- <yellow>%s</yellow> %s(<yellow>%s</yellow>): %d calls, %d errors, mean %.3f ms, max %.3f ms, total %.1f ms"
+                                    .formatted(callback.script(), callback.callback(), callback.event(), callback.calls(), callback.errors(), callback.meanNanos() / 1e6, callback.maxNanos() / 1e6, callback.totalNanos() / 1e6), sender);
+                        }
+                    });
+                }, job -> plugin.tickScheduler().submit(job, TaskPriority.HIGH));
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static void sendStats(Teachly plugin, CommandSender sender) {
+        Scheduler scheduler = plugin.scheduler();
+        SchedulerMetrics metrics = scheduler.getMetrics();
+
+        Text.send("<dark_green>Scheduler: <green>%d</green> tasks, <green>%d</green> rejections"
+                .formatted(scheduler.getTaskCount(), metrics.getRejections()), sender);
+        sendHistogram("Lateness", metrics.getLateness(), sender);
+        sendHistogram("Run time", metrics.getRunTime(), sender);
+
+        Histogram.Snapshot depth = metrics.getQueueDepth().snapshot();
+        Text.send("<gray>- <yellow>Queue depth</yellow>: mean %.1f, p50 %d, p99 %d, max %d"
+                .formatted(depth.mean(), depth.p50(), depth.p99(), depth.max()), sender);
+
+        scheduler.getTasks().stream()
+                .filter(task -> task.getLateness() != null && task.getRunTime() != null)
+                .sorted(Comparator.comparingLong((ScheduledTask task) -> task.getLateness().getPercentile(99)).reversed())
+                .limit(10)
+                .forEach(task -> {
+                    Histogram.Snapshot lateness = task.getLateness().snapshot();
+                    Histogram.Snapshot runTime = task.getRunTime().snapshot();
+
+                    Text.send("<gray>- Task <yellow>%d</yellow> (%s%s): %d runs, lateness p99 %.3f ms, run time mean %.3f ms, max %.3f ms"
+                            .formatted(task.getId(), task.getPriority(), task.isPeriodic() ? ", periodic" : "", runTime.count(), lateness.p99() / 1e6, runTime.mean() / 1e6, runTime.max() / 1e6), sender);
+                });
+
+        for (Script script : plugin.getScripts()) {
+            TokenBucket rateLimiter = script.getRateLimiter();
+            if (rateLimiter != null && rateLimiter.getThrottled() > 0) {
+                Text.send("<gray>- Script <yellow>%s</yellow>: %d calls, <red>%d</red> rate limited"
+                        .formatted(script.getId(), rateLimiter.getPermitted() + rateLimiter.getThrottled(), rateLimiter.getThrottled()), sender);
+            }
+
+            TokenBucket logLimiter = script.getLogLimiter();
+            if (logLimiter != null && logLimiter.getThrottled() > 0) {
+                Text.send("<gray>- Script <yellow>%s</yellow>: %d log messages, <red>%d</red> dropped"
+                        .formatted(script.getId(), logLimiter.getPermitted() + logLimiter.getThrottled(), logLimiter.getThrottled()), sender);
+            }
+        }
+
+        Logger logger = Logger.getLogger();
+        Text.send("<dark_green>Logger: <green>%s</green>, <green>%d</green> dropped messages"
+                .formatted(logger.isAsync() ? "async" : "sync", logger.getDroppedMessages()), sender);
+
+        ComponentCache.Stats cache = Text.getComponentCache().getStats();
+        Text.send("<dark_green>Text cache: <green>%d</green>/%d components, hit rate <green>%.1f%%</green>, %d evictions"
+                .formatted(cache.size(), cache.maxSize(), cache.hitRate() * 100, cache.evictions()), sender);
+    }
+
+    private static void sendHistogram(String name, Histogram histogram, CommandSender sender) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        Text.send("<gray>- <yellow>%s</yellow>: %d samples, mean %.3f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms"
+                .formatted(name, snapshot.count(), snapshot.mean() / 1e6, snapshot.p50() / 1e6, snapshot.p90() / 1e6, snapshot.p99() / 1e6, snapshot.max() / 1e6), sender);
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Work-stealing pool for CPU-bound jobs, such as generating or normalizing many exercises at once.
+ * Batches are split recursively so that every worker stays busy; the {@link Scheduler} should be used for timed
+ * or blocking tasks instead.
+ * <p>
+ * Jobs must not touch a script's polyglot context, which can only be used by one thread at a time.
+ */
+public class ComputePool {
+    private static final int SPLITS_PER_WORKER = 8;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a compute pool.
+     *
+     * @param parallelism The number of worker threads, or 0 to use one per available processor.
+     * @param name        The prefix of the worker thread names.
+     */
+    public ComputePool(int parallelism, @NotNull String name) {
+        Preconditions.checkArgument(parallelism >= 0, "Parallelism cannot be negative");
+        Preconditions.checkNotNull(name, "name");
+
+        AtomicInteger nextWorker = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName(name + " #" + nextWorker.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        };
+
+        this.pool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism, factory, null, false);
+    }
+
+    public ComputePool(int parallelism) {
+        this(parallelism, "Teachly Compute");
+    }
+
+    /**
+     * Run a job on the pool.
+     *
+     * @param job The job to run.
+     * @return A future completed with the result of the job.
+     * @throws RejectedExecutionException if the pool has been shut down.
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull Supplier<T> job) {
+        Preconditions.checkNotNull(job, "job");
+        return CompletableFuture.supplyAsync(job, pool);
+    }
+
+    /**
+     * Apply a function to every item in parallel.
+     *
+     * @param items    The items.
+     * @param function The function to apply.
+     * @return A future completed with the results, in the same order as the items.
+     * @throws RejectedExecutionException if the pool has been shut down.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public <T, R> CompletableFuture<List<R>> map(@NotNull Collection<T> items, @NotNull Function<? super T, ? extends R> function) {
+        Preconditions.checkNotNull(items, "items");
+        Preconditions.checkNotNull(function, "function");
+
+        List<T> list = new ArrayList<>(items);
+        Object[] results = new Object[list.size()];
+
+        return CompletableFuture.runAsync(() -> new Batch(list.size(), threshold(list.size()), i -> results[i] = function.apply(list.get(i))).invoke(), pool)
+                .thenApply(v -> (List<R>) Arrays.asList(results));
+    }
+
+    /**
+     * Run an action on every item in parallel.
+     *
+     * @param items  The items.
+     * @param action The action to run.
+     * @return A future completed when the action has run on every item.
+     * @throws RejectedExecutionException if the pool has been shut down.
+     */
+    @NotNull
+    public <T> CompletableFuture<Void> forEach(@NotNull Collection<T> items, @NotNull Consumer<? super T> action) {
+        Preconditions.checkNotNull(items, "items");
+        Preconditions.checkNotNull(action, "action");
+
+        List<T> list = new ArrayList<>(items);
+        return CompletableFuture.runAsync(() -> new Batch(list.size(), threshold(list.size()), i -> action.accept(list.get(i))).invoke(), pool);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getActiveThreadCount() {
+        return pool.getActiveThreadCount();
+    }
+
+    public long getQueuedTaskCount() {
+        return pool.getQueuedTaskCount();
+    }
+
+    /**
+     * Return the number of tasks taken by a worker from another worker's queue.
+     *
+     * @return The steal count.
+     */
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    /**
+     * Stop accepting jobs and wait for the running ones, interrupting them if they do not complete in time.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @return True if every job completed in time.
+     */
+    public boolean shutdown(long timeout, @NotNull TimeUnit unit) {
+        Preconditions.checkNotNull(unit, "unit");
+
+        pool.shutdown();
+
+        try {
+            if (pool.awaitTermination(timeout, unit)) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        pool.shutdownNow();
+        return false;
+    }
+
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    private int threshold(int size) {
+        return Math.max(1, size / (pool.getParallelism() * SPLITS_PER_WORKER));
+    }
+
+    private interface IndexConsumer {
+        void accept(int index);
+    }
+
+    private static final class Batch extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final IndexConsumer consumer;
+
+        private Batch(int size, int threshold, @NotNull IndexConsumer consumer) {
+            this(0, size, threshold, consumer);
+        }
+
+        private Batch(int from, int to, int threshold, @NotNull IndexConsumer consumer) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) consumer.accept(i);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Batch(from, middle, threshold, consumer), new Batch(middle, to, threshold, consumer));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with power-of-two buckets.
+ * Recording is allocation-free; percentiles are approximated by the upper bound of their bucket, capped by the maximum.
+ */
+public class Histogram {
+    private static final int BUCKETS = 65;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Return an approximation of a percentile.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the bucket containing the percentile, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long count = this.count.sum();
+        if (count == 0) return 0;
+
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) return Math.min(upperBound(i), max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Return a consistent enough view of the histogram for reporting.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getCount(), getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+
+    private static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public record Snapshot(long count, double mean, long p50, long p90, long p99, long max) {
+    }
+}
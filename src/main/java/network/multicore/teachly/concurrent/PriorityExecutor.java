@@ -0,0 +1,298 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.utils.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size thread pool that runs ready tasks in {@link TaskPriority} order.
+ * Tasks of the same priority run in submission order. To avoid starvation, a task that waited in the queue
+ * longer than the configured maximum wait runs next regardless of its priority.
+ */
+public class PriorityExecutor implements TaskExecutor {
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private final Logger logger = Logger.getLogger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition terminated = lock.newCondition();
+    private final List<ArrayDeque<Entry>> queues = new ArrayList<>(PRIORITIES.length);
+    private final Thread[] workers;
+    private final long maxWaitNanos;
+    private boolean shutdown = false;
+    private int liveWorkers;
+
+    public PriorityExecutor(int poolSize, long maxWait, @NotNull TimeUnit unit, @NotNull String name) {
+        Preconditions.checkArgument(poolSize > 0, "Pool size must be greater than 0");
+        Preconditions.checkArgument(maxWait > 0, "Max wait must be greater than 0");
+        Preconditions.checkNotNull(unit, "unit");
+        Preconditions.checkNotNull(name, "name");
+
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        for (int i = 0; i < PRIORITIES.length; i++) queues.add(new ArrayDeque<>());
+
+        this.workers = new Thread[poolSize];
+        this.liveWorkers = poolSize;
+
+        for (int i = 0; i < poolSize; i++) {
+            workers[i] = new Thread(this::work, name + " #" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queue a task for execution.
+     *
+     * @param runnable The task to run.
+     * @param priority The priority of the task.
+     * @throws RejectedExecutionException if the executor has been shut down.
+     */
+    @Override
+    public void execute(@NotNull Runnable runnable, @NotNull TaskPriority priority) {
+        Preconditions.checkNotNull(runnable, "runnable");
+        Preconditions.checkNotNull(priority, "priority");
+
+        lock.lock();
+        try {
+            if (shutdown) throw new RejectedExecutionException("Executor has been shut down");
+
+            queues.get(priority.ordinal()).addLast(new Entry(runnable, System.nanoTime()));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of tasks waiting to run with the given priority.
+     *
+     * @param priority The priority.
+     * @return The number of queued tasks.
+     */
+    @Override
+    public int getQueueDepth(@NotNull TaskPriority priority) {
+        Preconditions.checkNotNull(priority, "priority");
+
+        lock.lock();
+        try {
+            return queues.get(priority.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of tasks waiting to run for each priority.
+     *
+     * @return The queue depth of every priority.
+     */
+    @NotNull
+    @Override
+    public Map<TaskPriority, Integer> getQueueDepths() {
+        Map<TaskPriority, Integer> depths = new EnumMap<>(TaskPriority.class);
+
+        lock.lock();
+        try {
+            for (TaskPriority priority : PRIORITIES) depths.put(priority, queues.get(priority.ordinal()).size());
+        } finally {
+            lock.unlock();
+        }
+
+        return depths;
+    }
+
+    /**
+     * Stop accepting tasks. Already queued tasks are still executed.
+     */
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting tasks, drop the queued ones and interrupt the running ones.
+     *
+     * @return The tasks that were queued and never executed.
+     */
+    @NotNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+
+        lock.lock();
+        try {
+            shutdown = true;
+            queues.forEach(queue -> {
+                queue.forEach(entry -> pending.add(entry.runnable()));
+                queue.clear();
+            });
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Thread worker : workers) worker.interrupt();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && liveWorkers == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until every worker has terminated after a shutdown.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @return True if the executor terminated, false if the timeout elapsed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        lock.lock();
+        try {
+            while (!(shutdown && liveWorkers == 0)) {
+                if (nanos <= 0) return false;
+                nanos = terminated.awaitNanos(nanos);
+            }
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                Runnable task = take();
+                if (task == null) return;
+
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.warn("<yellow>Uncaught error in scheduled task: {}", t.getMessage());
+                }
+
+                // Do not leak an interrupt aimed at the previous task
+                Thread.interrupted();
+            }
+        } finally {
+            lock.lock();
+            try {
+                liveWorkers--;
+                terminated.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Runnable take() {
+        lock.lock();
+        try {
+            while (true) {
+                Entry entry = poll();
+                if (entry != null) return entry.runnable();
+                if (shutdown) return null;
+
+                try {
+                    notEmpty.await();
+                } catch (InterruptedException ignored) {
+                    // Interrupts are used only to stop running tasks, shutdown is checked on every loop
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the next task to run. Must be called while holding the lock.
+     * The highest priority non-empty queue wins, unless the oldest head of all queues has waited longer than the maximum wait.
+     */
+    private Entry poll() {
+        long now = System.nanoTime();
+        ArrayDeque<Entry> highest = null;
+        ArrayDeque<Entry> starving = null;
+        long longestWait = maxWaitNanos;
+
+        for (int i = PRIORITIES.length - 1; i >= 0; i--) {
+            ArrayDeque<Entry> queue = queues.get(i);
+            Entry head = queue.peekFirst();
+            if (head == null) continue;
+
+            if (highest == null) highest = queue;
+
+            long wait = now - head.enqueuedNanos();
+            if (wait > longestWait) {
+                longestWait = wait;
+                starving = queue;
+            }
+        }
+
+        if (starving != null) return starving.pollFirst();
+        if (highest != null) return highest.pollFirst();
+        return null;
+    }
+
+    private record Entry(@NotNull Runnable runnable, long enqueuedNanos) {
+    }
+}
@@ -27,29 +27,57 @@
 
 package network.multicore.teachly.concurrent;
 
-import network.multicore.mclib.Watchdog;
 import network.multicore.teachly.utils.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.UUID;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ScheduledTask {
+    private static final int IDLE = 0;
+    private static final int QUEUED = 1;
+    private static final int RUNNING = 2;
+    private static final int DONE = 3;
+    private static final long STRAGGLER_TIMEOUT_MILLIS = 30000;
     private final Logger logger = Logger.getLogger();
-    private final UUID id;
+    private final Scheduler scheduler;
+    private final long id;
+    private final Runnable runnable;
+    private final boolean periodic;
     private final boolean kill;
     private final TaskPriority priority;
-    private final ScheduledFuture<?> future;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private final CompletableFuture<Void> termination = new CompletableFuture<>();
+    private volatile TaskTimer.Timeout timer;
+    private volatile boolean cancelled = false;
+    private Thread runner;
+    private volatile long runStartNanos;
+    private final long firstDueNanos;
+    private final long periodNanos;
+    private volatile long dueNanos;
+    // Only periodic tasks keep their own histograms, allocated on their first run, so short one-shot tasks stay cheap
+    private volatile TaskHistograms histograms;
 
-    ScheduledTask(@NotNull UUID id, boolean kill, TaskPriority priority, @NotNull ScheduledFuture<?> future) {
+    ScheduledTask(@NotNull Scheduler scheduler, long id, @NotNull Runnable runnable, boolean periodic, boolean kill, TaskPriority priority, long delayNanos, long periodNanos) {
+        this.scheduler = scheduler;
         this.id = id;
+        this.runnable = runnable;
+        this.periodic = periodic;
         this.kill = kill;
         this.priority = priority == null ? TaskPriority.NORMAL : priority;
-        this.future = future;
+        this.firstDueNanos = System.nanoTime() + Math.max(delayNanos, 0);
+        this.periodNanos = periodNanos;
     }
 
-    public UUID getId() {
+    void setTimer(@NotNull TaskTimer.Timeout timer) {
+        this.timer = timer;
+        if (cancelled) timer.cancel();
+    }
+
+    public long getId() {
         return id;
     }
 
@@ -57,31 +85,186 @@ public class ScheduledTask {
         return priority;
     }
 
-    //TODO Test termination of tasks
-    public void cancel() {
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return termination.isDone();
+    }
+
+    /**
+     * Return how late every run of this task started, in nanoseconds.
+     * One-shot tasks are only recorded in the scheduler's {@link SchedulerMetrics}.
+     *
+     * @return The lateness histogram, or null if the task is not periodic or has not run yet.
+     */
+    @Nullable
+    public Histogram getLateness() {
+        TaskHistograms histograms = this.histograms;
+        return histograms == null ? null : histograms.lateness();
+    }
+
+    /**
+     * Return the duration of every run of this task, in nanoseconds.
+     * One-shot tasks are only recorded in the scheduler's {@link SchedulerMetrics}.
+     *
+     * @return The run time histogram, or null if the task is not periodic or has not run yet.
+     */
+    @Nullable
+    public Histogram getRunTime() {
+        TaskHistograms histograms = this.histograms;
+        return histograms == null ? null : histograms.runTime();
+    }
+
+    /**
+     * Return for how long the current run of the task has been running.
+     *
+     * @return The running time in nanoseconds, or 0 if the task is not running.
+     */
+    public long getRunningNanos() {
+        long start = runStartNanos;
+        return start == 0 ? 0 : Math.max(System.nanoTime() - start, 1);
+    }
+
+    /**
+     * Cancel the task without waiting for it.
+     * A task that is not running terminates immediately. A running task is interrupted if it was scheduled with kill,
+     * otherwise it is left to finish its current run. A warning is logged if the task does not terminate within 30 seconds.
+     * <p>
+     * A task cancelling itself must not wait on the returned future, as it completes only after the task returns.
+     *
+     * @return A future completed when the task has terminated.
+     */
+    @NotNull
+    public CompletableFuture<Void> cancel() {
+        if (cancelled || isDone()) return termination;
+        cancelled = true;
+
+        TaskTimer.Timeout timer = this.timer;
+        if (timer != null) timer.cancel();
+
+        if (state.compareAndSet(IDLE, DONE)) {
+            terminate();
+            return termination;
+        }
+
+        if (kill) {
+            synchronized (this) {
+                if (runner != null && runner != Thread.currentThread()) runner.interrupt();
+            }
+        }
+
+        reportStraggler();
+        return termination;
+    }
+
+    /**
+     * Return a future completed when the task has terminated, either after its last run or after being cancelled.
+     *
+     * @return The termination future.
+     */
+    @NotNull
+    public CompletableFuture<Void> getTermination() {
+        return termination;
+    }
+
+    /**
+     * Hand the task to the executor, unless it is cancelled or a previous execution is still queued or running.
+     */
+    void dispatch() {
+        if (cancelled || !state.compareAndSet(IDLE, QUEUED)) return;
+
+        long now = System.nanoTime();
+        // A periodic run is due at the last multiple of the period, runs skipped while the previous one was still going are not late
+        dueNanos = periodic && periodNanos > 0 && now > firstDueNanos ? now - (now - firstDueNanos) % periodNanos : firstDueNanos;
+
+        TaskExecutor executor = scheduler.executor();
+        scheduler.getMetrics().getQueueDepth().record(executor.getQueueDepth(priority));
+
         try {
-            if (!future.isCancelled() && !future.isDone()) {
-                if (kill) {
-                    Watchdog watchdog = new Watchdog(() -> {
-                        logger.warn("<yellow>Task {} did not terminate within 30 seconds", id);
-                    }, 30000);
-                    watchdog.setEnabled(true);
-
-                    future.cancel(true);
-
-                    try {
-                        future.get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        logger.warn("<yellow>An error occurred while canceling task {}: {}", id, e.getMessage());
-                    } finally {
-                        watchdog.setEnabled(false);
-                    }
-                } else {
-                    future.cancel(false);
+            executor.execute(this::execute, priority);
+        } catch (RejectedExecutionException e) {
+            scheduler.getMetrics().recordRejection();
+            state.set(DONE);
+            terminate();
+        }
+    }
+
+    private void execute() {
+        if (!state.compareAndSet(QUEUED, RUNNING)) return;
+
+        boolean failed = false;
+
+        if (!cancelled) {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            long start = System.nanoTime();
+            runStartNanos = start;
+
+            // Runs of the same task never overlap, so the histograms are created once
+            TaskHistograms histograms = this.histograms;
+            if (histograms == null && periodic) this.histograms = histograms = new TaskHistograms(new Histogram(), new Histogram());
+
+            record(histograms == null ? null : histograms.lateness(), scheduler.getMetrics().getLateness(), start - dueNanos);
+
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                failed = true;
+                logger.warn("<yellow>Task {} threw an exception: {}", id, t.getMessage());
+            } finally {
+                runStartNanos = 0;
+                record(histograms == null ? null : histograms.runTime(), scheduler.getMetrics().getRunTime(), System.nanoTime() - start);
+                synchronized (this) {
+                    runner = null;
+                    Thread.interrupted();
                 }
             }
-        } catch (Throwable t) {
-            logger.warn("<yellow>An error occurred while canceling task {}: {}", id, t.getMessage());
         }
+
+        if (periodic && !failed && !cancelled) {
+            state.set(IDLE);
+            if (!cancelled || !state.compareAndSet(IDLE, DONE)) return;
+        } else {
+            state.set(DONE);
+        }
+
+        // A periodic task that throws is not executed again
+        TaskTimer.Timeout timer = this.timer;
+        if (timer != null) timer.cancel();
+        terminate();
+    }
+
+    private static void record(@Nullable Histogram task, @NotNull Histogram aggregate, long value) {
+        if (task != null) task.record(value);
+        aggregate.record(value);
+    }
+
+    private void reportStraggler() {
+        if (termination.isDone()) return;
+
+        try {
+            TaskTimer.Timeout timeout = scheduler.timer().schedule(() -> {
+                if (!termination.isDone()) logger.warn("<yellow>Task {} did not terminate within {} seconds", id, TimeUnit.MILLISECONDS.toSeconds(STRAGGLER_TIMEOUT_MILLIS));
+            }, STRAGGLER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+            termination.whenComplete((v, t) -> timeout.cancel());
+        } catch (RejectedExecutionException ignored) {
+            // The timer has been shut down, stragglers are reported by Scheduler.shutdown()
+        }
+    }
+
+    private void terminate() {
+        scheduler.unregister(this);
+        termination.complete(null);
+    }
+
+    private record TaskHistograms(@NotNull Histogram lateness, @NotNull Histogram runTime) {
     }
 }
@@ -30,35 +30,85 @@ package network.multicore.teachly.concurrent;
 import com.google.common.base.Preconditions;
 import network.multicore.teachly.utils.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Scheduler {
+    private static final long DEFAULT_MAX_QUEUE_WAIT_MILLIS = 500;
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 5000;
     private final Logger logger = Logger.getLogger();
-    private final ScheduledExecutorService executorService;
-    private final Map<UUID, ScheduledTask> tasks = new HashMap<>();
+    private final TaskTimer timer;
+    private final TaskExecutor executor;
+    private final Map<Long, ScheduledTask> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final SchedulerMetrics metrics = new SchedulerMetrics();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Create a scheduler.
+     * Tasks are timed by the given {@link TaskTimer} and run by the given {@link TaskExecutor}.
+     *
+     * @param executor The executor running due tasks, e.g. a {@link PriorityExecutor} or a {@link VirtualThreadExecutor}.
+     * @param timer    The timer deciding when tasks are due, e.g. an {@link ExecutorTimer} or a {@link TimingWheel}.
+     */
+    public Scheduler(@NotNull TaskExecutor executor, @NotNull TaskTimer timer) {
+        Preconditions.checkNotNull(executor, "executor");
+        Preconditions.checkNotNull(timer, "timer");
+
+        this.executor = executor;
+        this.timer = timer;
+    }
 
-    public Scheduler(int poolSize) {
-        Preconditions.checkArgument(poolSize > 0, "Pool size must be greater than 0");
+    public Scheduler(@NotNull TaskExecutor executor) {
+        this(executor, new ExecutorTimer("Teachly Scheduler Timer"));
+    }
+
+    /**
+     * Create a scheduler.
+     * Tasks are timed by the given {@link TaskTimer} and run by a pool of workers in {@link TaskPriority} order.
+     *
+     * @param poolSize     The number of worker threads.
+     * @param maxQueueWait The time after which a queued task runs next regardless of its priority.
+     * @param unit         The unit of maxQueueWait.
+     * @param timer        The timer deciding when tasks are due, e.g. an {@link ExecutorTimer} or a {@link TimingWheel}.
+     */
+    public Scheduler(int poolSize, long maxQueueWait, @NotNull TimeUnit unit, @NotNull TaskTimer timer) {
+        this(new PriorityExecutor(poolSize, maxQueueWait, unit, "Teachly Scheduler Worker"), timer);
+    }
+
+    public Scheduler(int poolSize, long maxQueueWait, @NotNull TimeUnit unit) {
+        this(new PriorityExecutor(poolSize, maxQueueWait, unit, "Teachly Scheduler Worker"));
+    }
+
+    public Scheduler(int poolSize, @NotNull TaskTimer timer) {
+        this(poolSize, DEFAULT_MAX_QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS, timer);
+    }
 
-        this.executorService = Executors.newScheduledThreadPool(poolSize);
+    public Scheduler(int poolSize) {
+        this(poolSize, DEFAULT_MAX_QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     public ScheduledTask scheduleTaskAtFixedRate(@NotNull Runnable runnable, long delay, long period, @NotNull TimeUnit unit, boolean kill, TaskPriority priority) {
         Preconditions.checkNotNull(runnable, "runnable");
         Preconditions.checkNotNull(unit, "unit");
 
-        UUID id = generateTaskUUID();
+        ScheduledTask task = register(runnable, true, kill, priority, unit.toNanos(delay), unit.toNanos(period));
 
-        ScheduledTask task = new ScheduledTask(id, kill, priority, executorService.scheduleAtFixedRate(() -> {
-            runnable.run();
-            tasks.remove(id);
-        }, delay, period, unit));
+        try {
+            // If an execution is still queued or running when the next one is due, the next one is skipped
+            task.setTimer(timer.scheduleAtFixedRate(task::dispatch, delay, period, unit));
+        } catch (RejectedExecutionException e) {
+            metrics.recordRejection();
+            unregister(task);
+            throw e;
+        }
 
-        tasks.put(id, task);
         return task;
     }
 
@@ -94,14 +144,17 @@ public class Scheduler {
         Preconditions.checkNotNull(runnable, "runnable");
         Preconditions.checkNotNull(unit, "unit");
 
-        UUID id = generateTaskUUID();
+        ScheduledTask task = register(runnable, false, kill, priority, unit.toNanos(delay), 0);
 
-        ScheduledTask task = new ScheduledTask(id, kill, priority, executorService.schedule(() -> {
-            runnable.run();
-            tasks.remove(id);
-        }, delay, unit));
+        try {
+            if (delay <= 0) task.dispatch();
+            else task.setTimer(timer.schedule(task::dispatch, delay, unit));
+        } catch (RejectedExecutionException e) {
+            metrics.recordRejection();
+            unregister(task);
+            throw e;
+        }
 
-        tasks.put(id, task);
         return task;
     }
 
@@ -129,41 +182,175 @@ public class Scheduler {
         return scheduleTask(runnable, 0, TimeUnit.MILLISECONDS, true, null);
     }
 
-    public void shutdown() {
+    /**
+     * Cancel several tasks at once without waiting for them.
+     *
+     * @param tasks The tasks to cancel.
+     * @return A future completed when every task has terminated.
+     */
+    @NotNull
+    public CompletableFuture<Void> cancelAll(@NotNull Collection<ScheduledTask> tasks) {
+        Preconditions.checkNotNull(tasks, "tasks");
+
+        return CompletableFuture.allOf(tasks.stream()
+                .map(ScheduledTask::cancel)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Shut the scheduler down, waiting at most 5 seconds for the running tasks.
+     *
+     * @return True if every task terminated in time.
+     * @see #shutdown(long, TimeUnit)
+     */
+    public boolean shutdown() {
+        return shutdown(DEFAULT_SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Shut the scheduler down.
+     * New tasks are rejected and no task becomes due anymore, then every task is cancelled, from the highest priority to the lowest,
+     * without waiting for one before cancelling the next. Finally, the scheduler waits for the running tasks until the deadline.
+     * Tasks still running after the deadline are logged and interrupted.
+     *
+     * @param timeout The maximum time to wait for the running tasks.
+     * @param unit    The unit of the timeout.
+     * @return True if every task terminated in time.
+     */
+    public boolean shutdown(long timeout, @NotNull TimeUnit unit) {
+        Preconditions.checkNotNull(unit, "unit");
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(timeout, 0));
+
+        // Stop accepting tasks
+        shutdown = true;
+        timer.shutdown();
+        executor.shutdown();
+
+        // Cancel by priority
         List<ScheduledTask> tasks = new ArrayList<>(this.tasks.values());
         tasks.sort((t1, t2) -> Integer.compare(t2.getPriority().getValue(), t1.getPriority().getValue()));
+        CompletableFuture<Void> cancellation = cancelAll(tasks);
 
-        for (ScheduledTask task : tasks) {
-            task.cancel();
+        // Drain until the deadline
+        boolean terminated;
+        try {
+            cancellation.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            terminated = executor.awaitTermination(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            terminated = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
         }
 
-        tasks.clear();
-        this.tasks.clear();
+        if (!terminated) {
+            tasks.stream()
+                    .filter(task -> !task.isDone())
+                    .forEach(task -> logger.warn("<yellow>Task {} ({}) was still running after {} ms", task.getId(), task.getPriority(), TimeUnit.NANOSECONDS.toMillis(task.getRunningNanos())));
 
-        try {
-            if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) throw new InterruptedException("Scheduler shutdown timeout");
-        } catch (InterruptedException e) {
-            logger.error("<red>An error occurred while shutting down the scheduler: {}", e.getMessage());
+            executor.shutdownNow();
         }
 
-        executorService.shutdown();
+        this.tasks.clear();
+        return terminated;
     }
 
     public void shutdownNow() {
-        executorService.shutdownNow();
+        shutdown = true;
+        timer.shutdown();
+        executor.shutdownNow();
     }
 
     public boolean isShutdown() {
-        return executorService.isShutdown();
+        return shutdown;
+    }
+
+    /**
+     * Return the number of tasks waiting for a worker with the given priority.
+     *
+     * @param priority The priority.
+     * @return The number of queued tasks.
+     */
+    public int getQueueDepth(@NotNull TaskPriority priority) {
+        return executor.getQueueDepth(priority);
     }
 
-    private UUID generateTaskUUID() {
-        UUID uuid;
+    /**
+     * Return the number of tasks waiting for a worker for each priority.
+     *
+     * @return The queue depth of every priority.
+     */
+    @NotNull
+    public Map<TaskPriority, Integer> getQueueDepths() {
+        return executor.getQueueDepths();
+    }
+
+    /**
+     * Return the task with the given id.
+     *
+     * @param id The id of the task.
+     * @return The task or null if it does not exist or has already terminated.
+     */
+    @Nullable
+    public ScheduledTask getTask(long id) {
+        return tasks.get(id);
+    }
 
-        do {
-            uuid = UUID.randomUUID();
-        } while (tasks.containsKey(uuid));
+    /**
+     * Return the tasks that are scheduled or running.
+     *
+     * @return A copy of the active tasks.
+     */
+    @NotNull
+    public List<ScheduledTask> getTasks() {
+        return new ArrayList<>(tasks.values());
+    }
+
+    /**
+     * Return the aggregate metrics of every task run by this scheduler.
+     * Per task metrics of periodic tasks are available from {@link ScheduledTask#getLateness()} and {@link ScheduledTask#getRunTime()}.
+     *
+     * @return The metrics.
+     */
+    @NotNull
+    public SchedulerMetrics getMetrics() {
+        return metrics;
+    }
 
-        return uuid;
+    /**
+     * Return the number of tasks that are scheduled or running.
+     * Periodic tasks are counted until they are cancelled.
+     *
+     * @return The number of active tasks.
+     */
+    public int getTaskCount() {
+        return tasks.size();
+    }
+
+    void unregister(@NotNull ScheduledTask task) {
+        tasks.remove(task.getId(), task);
+    }
+
+    @NotNull
+    TaskExecutor executor() {
+        return executor;
+    }
+
+    @NotNull
+    TaskTimer timer() {
+        return timer;
+    }
+
+    @NotNull
+    private ScheduledTask register(@NotNull Runnable runnable, boolean periodic, boolean kill, TaskPriority priority, long delayNanos, long periodNanos) {
+        if (shutdown) {
+            metrics.recordRejection();
+            throw new RejectedExecutionException("Scheduler has been shut down");
+        }
+
+        ScheduledTask task = new ScheduledTask(this, nextId.incrementAndGet(), runnable, periodic, kill, priority, delayNanos, periodNanos);
+        tasks.put(task.getId(), task);
+        return task;
     }
 }
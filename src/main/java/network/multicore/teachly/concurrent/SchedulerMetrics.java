@@ -0,0 +1,81 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregate metrics of a {@link Scheduler}.
+ * Lateness is the time between when a task was due and when it started running, including the time spent queued.
+ */
+public class SchedulerMetrics {
+    private final Histogram lateness = new Histogram();
+    private final Histogram runTime = new Histogram();
+    private final Histogram queueDepth = new Histogram();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Return the lateness of every run, in nanoseconds.
+     *
+     * @return The lateness histogram.
+     */
+    public Histogram getLateness() {
+        return lateness;
+    }
+
+    /**
+     * Return the duration of every run, in nanoseconds.
+     *
+     * @return The run time histogram.
+     */
+    public Histogram getRunTime() {
+        return runTime;
+    }
+
+    /**
+     * Return the number of tasks already queued for the same priority every time a task is handed to the executor.
+     *
+     * @return The queue depth histogram.
+     */
+    public Histogram getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Return the number of tasks rejected because the scheduler was shut down.
+     *
+     * @return The number of rejections.
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+}
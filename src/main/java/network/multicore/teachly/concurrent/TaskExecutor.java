@@ -0,0 +1,94 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link Scheduler} tasks once they are due.
+ * Implementations decide which threads run the tasks, e.g. a fixed pool of platform threads or a virtual thread per task.
+ */
+public interface TaskExecutor {
+
+    /**
+     * Submit a task for execution.
+     *
+     * @param runnable The task to run.
+     * @param priority The priority of the task.
+     * @throws RejectedExecutionException if the executor has been shut down.
+     */
+    void execute(@NotNull Runnable runnable, @NotNull TaskPriority priority);
+
+    /**
+     * Return the number of tasks waiting to run with the given priority.
+     *
+     * @param priority The priority.
+     * @return The number of queued tasks.
+     */
+    int getQueueDepth(@NotNull TaskPriority priority);
+
+    /**
+     * Return the number of tasks waiting to run for each priority.
+     *
+     * @return The queue depth of every priority.
+     */
+    @NotNull
+    Map<TaskPriority, Integer> getQueueDepths();
+
+    /**
+     * Stop accepting tasks. Already submitted tasks are still executed.
+     */
+    void shutdown();
+
+    /**
+     * Stop accepting tasks, drop the queued ones and interrupt the running ones.
+     *
+     * @return The tasks that were queued and never executed.
+     */
+    @NotNull
+    List<Runnable> shutdownNow();
+
+    boolean isShutdown();
+
+    boolean isTerminated();
+
+    /**
+     * Wait until every submitted task has terminated after a shutdown.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @return True if the executor terminated, false if the timeout elapsed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException;
+}
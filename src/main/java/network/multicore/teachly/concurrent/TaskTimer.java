@@ -0,0 +1,87 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when {@link Scheduler} tasks are due.
+ * Implementations only time tasks: the runnables they receive must be cheap, as they run on the timer thread.
+ */
+public interface TaskTimer {
+
+    /**
+     * Run a task once after a delay.
+     *
+     * @param task  The task to run.
+     * @param delay The delay.
+     * @param unit  The unit of the delay.
+     * @return A handle to cancel the task.
+     * @throws RejectedExecutionException if the timer has been shut down.
+     */
+    @NotNull
+    Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit);
+
+    /**
+     * Run a task periodically, at a fixed rate, after an initial delay.
+     *
+     * @param task   The task to run.
+     * @param delay  The initial delay.
+     * @param period The period between two runs.
+     * @param unit   The unit of delay and period.
+     * @return A handle to cancel the task.
+     * @throws RejectedExecutionException if the timer has been shut down.
+     */
+    @NotNull
+    Timeout scheduleAtFixedRate(@NotNull Runnable task, long delay, long period, @NotNull TimeUnit unit);
+
+    /**
+     * Stop the timer. Tasks that are not due yet will never run.
+     */
+    void shutdown();
+
+    boolean isShutdown();
+
+    /**
+     * Handle of a task scheduled on a {@link TaskTimer}.
+     */
+    interface Timeout {
+
+        /**
+         * Cancel the task. Does not interrupt a run in progress.
+         *
+         * @return False if the task was already cancelled or has already run.
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+    }
+}
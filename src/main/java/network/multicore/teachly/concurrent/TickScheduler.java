@@ -0,0 +1,294 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.utils.Logger;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs jobs on the server main thread, once per tick, within a time budget.
+ * Every tick, due jobs run in {@link TaskPriority} order until the budget is used up; the remaining ones roll over to the next tick,
+ * so a burst of work is spread over several ticks instead of causing a lag spike. At least one job runs every tick.
+ * To avoid starvation, a job that has been due for longer than the configured maximum wait runs next regardless of its priority.
+ * Jobs can be submitted from any thread.
+ */
+public class TickScheduler {
+    private static final TaskPriority[] PRIORITIES = TaskPriority.values();
+    private static final long DEFAULT_MAX_WAIT_TICKS = 20;
+    private final Logger logger = Logger.getLogger();
+    private final Plugin plugin;
+    private final long budgetNanos;
+    private final long maxWaitTicks;
+    private final Queue<TickTask> incoming = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<TickTask> delayed = new PriorityQueue<>(Comparator.comparingLong(TickTask::dueTick));
+    private final ArrayDeque<TickTask>[] ready;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long currentTick = 0;
+    private volatile int lastTickRun = 0;
+    private volatile int lastTickRolledOver = 0;
+    private long deadline = 0;
+    private BukkitTask task;
+
+    /**
+     * Create a tick scheduler. Call {@link #start()} to start running jobs.
+     *
+     * @param plugin       The plugin owning the Bukkit task.
+     * @param budget       The time spent running jobs every tick.
+     * @param unit         The unit of budget.
+     * @param maxWaitTicks The number of ticks after which a due job runs next regardless of its priority.
+     */
+    @SuppressWarnings("unchecked")
+    public TickScheduler(@NotNull Plugin plugin, long budget, @NotNull TimeUnit unit, long maxWaitTicks) {
+        Preconditions.checkNotNull(plugin, "plugin");
+        Preconditions.checkArgument(budget > 0, "Budget must be greater than 0");
+        Preconditions.checkNotNull(unit, "unit");
+        Preconditions.checkArgument(maxWaitTicks > 0, "Max wait must be greater than 0");
+
+        this.plugin = plugin;
+        this.budgetNanos = unit.toNanos(budget);
+        this.maxWaitTicks = maxWaitTicks;
+        this.ready = new ArrayDeque[PRIORITIES.length];
+        for (int i = 0; i < ready.length; i++) ready[i] = new ArrayDeque<>();
+    }
+
+    public TickScheduler(@NotNull Plugin plugin, long budget, @NotNull TimeUnit unit) {
+        this(plugin, budget, unit, DEFAULT_MAX_WAIT_TICKS);
+    }
+
+    /**
+     * Start running jobs every tick.
+     */
+    public synchronized void start() {
+        if (task != null) return;
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * Stop running jobs. Jobs that have not run yet are dropped.
+     */
+    public synchronized void stop() {
+        if (task == null) return;
+
+        task.cancel();
+        task = null;
+
+        incoming.clear();
+        delayed.clear();
+        for (ArrayDeque<TickTask> queue : ready) queue.clear();
+        pending.set(0);
+    }
+
+    public synchronized boolean isRunning() {
+        return task != null;
+    }
+
+    /**
+     * Run a job on the main thread on the next tick.
+     *
+     * @param runnable The job.
+     * @param priority The priority of the job.
+     * @return A handle to cancel the job.
+     */
+    @NotNull
+    public TickTask submit(@NotNull Runnable runnable, TaskPriority priority) {
+        return submitTimer(runnable, 0, 0, priority);
+    }
+
+    @NotNull
+    public TickTask submit(@NotNull Runnable runnable) {
+        return submitTimer(runnable, 0, 0, null);
+    }
+
+    /**
+     * Run a job on the main thread after a number of ticks.
+     *
+     * @param runnable   The job.
+     * @param delayTicks The number of ticks to wait.
+     * @param priority   The priority of the job.
+     * @return A handle to cancel the job.
+     */
+    @NotNull
+    public TickTask submitLater(@NotNull Runnable runnable, long delayTicks, TaskPriority priority) {
+        return submitTimer(runnable, delayTicks, 0, priority);
+    }
+
+    @NotNull
+    public TickTask submitLater(@NotNull Runnable runnable, long delayTicks) {
+        return submitTimer(runnable, delayTicks, 0, null);
+    }
+
+    /**
+     * Run a job on the main thread periodically.
+     *
+     * @param runnable    The job.
+     * @param delayTicks  The number of ticks before the first run.
+     * @param periodTicks The number of ticks between two runs, or 0 to run only once.
+     * @param priority    The priority of the job.
+     * @return A handle to cancel the job.
+     */
+    @NotNull
+    public TickTask submitTimer(@NotNull Runnable runnable, long delayTicks, long periodTicks, TaskPriority priority) {
+        Preconditions.checkNotNull(runnable, "runnable");
+        Preconditions.checkArgument(periodTicks >= 0, "Period cannot be negative");
+
+        TickTask tickTask = new TickTask(runnable, priority == null ? TaskPriority.NORMAL : priority, currentTick + Math.max(delayTicks, 1), periodTicks);
+        pending.incrementAndGet();
+        incoming.add(tickTask);
+        return tickTask;
+    }
+
+    /**
+     * Return the number of jobs that are waiting to run, including delayed and periodic ones.
+     *
+     * @return The number of pending jobs.
+     */
+    public int getPendingJobs() {
+        return pending.get();
+    }
+
+    /**
+     * Return the number of jobs that ran during the last tick.
+     *
+     * @return The number of jobs.
+     */
+    public int getLastTickRun() {
+        return lastTickRun;
+    }
+
+    /**
+     * Return the number of due jobs that did not fit in the budget of the last tick and rolled over to the next one.
+     *
+     * @return The number of jobs.
+     */
+    public int getLastTickRolledOver() {
+        return lastTickRolledOver;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Return the {@link System#nanoTime()} at which the budget of the running tick is used up.
+     * Jobs doing their work in chunks can stop there, so they do not take more than what is left of the budget.
+     * Must be called from a job.
+     *
+     * @return The deadline of the running tick.
+     */
+    public long getTickDeadline() {
+        return deadline;
+    }
+
+    private void tick() {
+        long tick = ++currentTick;
+
+        TickTask tickTask;
+        while ((tickTask = incoming.poll()) != null) {
+            if (tickTask.dueTick() <= tick) ready[tickTask.getPriority().ordinal()].addLast(tickTask);
+            else delayed.add(tickTask);
+        }
+
+        while ((tickTask = delayed.peek()) != null && tickTask.dueTick() <= tick) {
+            delayed.poll();
+            ready[tickTask.getPriority().ordinal()].addLast(tickTask);
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        this.deadline = deadline;
+        int run = 0;
+
+        while ((tickTask = nextReady(tick)) != null) {
+            if (tickTask.isCancelled()) {
+                pending.decrementAndGet();
+                continue;
+            }
+
+            try {
+                tickTask.runnable().run();
+            } catch (Throwable t) {
+                logger.warn("<yellow>Uncaught error in main thread job: {}", t.getMessage());
+            }
+
+            run++;
+
+            if (tickTask.isPeriodic() && !tickTask.isCancelled()) {
+                tickTask.reschedule(tick + tickTask.periodTicks());
+                delayed.add(tickTask);
+            } else {
+                tickTask.markDone();
+                pending.decrementAndGet();
+            }
+
+            if (System.nanoTime() >= deadline) break;
+        }
+
+        int rolledOver = 0;
+        for (ArrayDeque<TickTask> queue : ready) rolledOver += queue.size();
+
+        lastTickRun = run;
+        lastTickRolledOver = rolledOver;
+    }
+
+    /**
+     * Remove the next job to run.
+     * The highest priority non-empty queue wins, unless the oldest head of all queues has been due for longer than the maximum wait.
+     */
+    private TickTask nextReady(long tick) {
+        ArrayDeque<TickTask> highest = null;
+        ArrayDeque<TickTask> starving = null;
+        long longestWait = maxWaitTicks;
+
+        for (int i = ready.length - 1; i >= 0; i--) {
+            TickTask head = ready[i].peekFirst();
+            if (head == null) continue;
+
+            if (highest == null) highest = ready[i];
+
+            long wait = tick - head.dueTick();
+            if (wait > longestWait) {
+                longestWait = wait;
+                starving = ready[i];
+            }
+        }
+
+        if (starving != null) return starving.pollFirst();
+        if (highest != null) return highest.pollFirst();
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Handle of a job submitted to a {@link TickScheduler}.
+ */
+public class TickTask {
+    private final Runnable runnable;
+    private final TaskPriority priority;
+    private final long periodTicks;
+    private long dueTick;
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+
+    TickTask(@NotNull Runnable runnable, @NotNull TaskPriority priority, long dueTick, long periodTicks) {
+        this.runnable = runnable;
+        this.priority = priority;
+        this.dueTick = dueTick;
+        this.periodTicks = periodTicks;
+    }
+
+    public TaskPriority getPriority() {
+        return priority;
+    }
+
+    public boolean isPeriodic() {
+        return periodTicks > 0;
+    }
+
+    /**
+     * Cancel the job. A job that is running is not interrupted, but a periodic job will not run again.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Return true if the job has run, or has been cancelled, and will not run again.
+     *
+     * @return True if the job is done.
+     */
+    public boolean isDone() {
+        return done || cancelled;
+    }
+
+    @NotNull
+    Runnable runnable() {
+        return runnable;
+    }
+
+    long dueTick() {
+        return dueTick;
+    }
+
+    long periodTicks() {
+        return periodTicks;
+    }
+
+    void reschedule(long dueTick) {
+        this.dueTick = dueTick;
+    }
+
+    void markDone() {
+        done = true;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.utils.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel {@link TaskTimer}.
+ * Scheduling and cancelling are O(1): new and cancelled timeouts are queued and applied to the wheel by its thread on the next tick.
+ * Timeouts fire with a precision of one tick, so this timer suits large numbers of short, mostly cancelled timers
+ * like exercise timeouts, hint reveals and cooldowns.
+ */
+public class TimingWheel implements TaskTimer {
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_TICKS_PER_WHEEL = 512;
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+    private final Logger logger = Logger.getLogger();
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<WheelTimeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean shutdown = false;
+    private long tick = 0;
+
+    /**
+     * Create a timing wheel and start its thread.
+     *
+     * @param tickDuration  The duration of a tick, which is also the precision of the timer.
+     * @param unit          The unit of tickDuration.
+     * @param ticksPerWheel The number of buckets of the wheel, rounded up to a power of two.
+     * @param name          The name of the timer thread.
+     */
+    public TimingWheel(long tickDuration, @NotNull TimeUnit unit, int ticksPerWheel, @NotNull String name) {
+        Preconditions.checkArgument(tickDuration > 0, "Tick duration must be greater than 0");
+        Preconditions.checkArgument(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, "Ticks per wheel must be between 1 and 2^30");
+        Preconditions.checkNotNull(unit, "unit");
+        Preconditions.checkNotNull(name, "name");
+
+        this.tickNanos = unit.toNanos(tickDuration);
+
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (size == 0) size = 1;
+
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::work, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public TimingWheel(@NotNull String name) {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL, name);
+    }
+
+    @NotNull
+    @Override
+    public Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        return add(task, unit.toNanos(Math.max(delay, 0)), 0);
+    }
+
+    @NotNull
+    @Override
+    public Timeout scheduleAtFixedRate(@NotNull Runnable task, long delay, long period, @NotNull TimeUnit unit) {
+        Preconditions.checkArgument(period > 0, "Period must be greater than 0");
+        return add(task, unit.toNanos(Math.max(delay, 0)), unit.toNanos(period));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        worker.interrupt();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Return the number of timeouts that have neither fired nor been cancelled.
+     * Periodic timeouts are counted until they are cancelled.
+     *
+     * @return The number of pending timeouts.
+     */
+    public long getPendingTimeouts() {
+        return pending.get();
+    }
+
+    @NotNull
+    private WheelTimeout add(@NotNull Runnable task, long delayNanos, long periodNanos) {
+        Preconditions.checkNotNull(task, "task");
+        if (shutdown) throw new RejectedExecutionException("Timer has been shut down");
+
+        WheelTimeout timeout = new WheelTimeout(task, System.nanoTime() - startNanos + delayNanos, periodNanos);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    private void work() {
+        while (!shutdown) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (shutdown) break;
+                    continue;
+                }
+            }
+
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire((tick + 1) * tickNanos);
+            tick++;
+        }
+
+        added.clear();
+        cancelled.clear();
+        pending.set(0);
+    }
+
+    private void removeCancelled() {
+        WheelTimeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = added.poll();
+            if (timeout == null) return;
+            if (timeout.state.get() == WheelTimeout.CANCELLED) continue;
+
+            place(timeout);
+        }
+    }
+
+    private void place(@NotNull WheelTimeout timeout) {
+        long due = Math.max(timeout.deadline / tickNanos, tick);
+        timeout.remainingRounds = (due - tick) / wheel.length;
+        wheel[(int) (due & mask)].add(timeout);
+    }
+
+    private final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void add(@NotNull WheelTimeout timeout) {
+            timeout.bucket = this;
+
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(@NotNull WheelTimeout timeout) {
+            if (timeout.prev != null) timeout.prev.next = timeout.next;
+            if (timeout.next != null) timeout.next.prev = timeout.prev;
+            if (timeout == head) head = timeout.next;
+            if (timeout == tail) tail = timeout.prev;
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expire(long deadline) {
+            WheelTimeout timeout = head;
+
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+
+                if (timeout.state.get() == WheelTimeout.CANCELLED) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+    }
+
+    private final class WheelTimeout implements Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private final Runnable task;
+        private final long periodNanos;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long deadline;
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTimeout prev;
+        private WheelTimeout next;
+
+        private WheelTimeout(@NotNull Runnable task, long deadline, long periodNanos) {
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) return false;
+
+            pending.decrementAndGet();
+            cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (periodNanos == 0) {
+                if (!state.compareAndSet(WAITING, EXPIRED)) return;
+                pending.decrementAndGet();
+            }
+
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("<yellow>Uncaught error in timer task: {}", t.getMessage());
+            }
+
+            if (periodNanos > 0 && state.get() == WAITING) {
+                // Placed on the next tick, so it is never re-added to the bucket being expired
+                deadline += periodNanos;
+                added.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.concurrent;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.utils.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that runs every task on its own virtual thread.
+ * Tasks start as soon as they are submitted, so nothing is ever queued and priorities do not apply.
+ * Suited to tasks that block on I/O: thousands of them can wait at the same time without sizing a pool.
+ */
+public class VirtualThreadExecutor implements TaskExecutor {
+    private final Logger logger = Logger.getLogger();
+    private final ExecutorService executor;
+
+    public VirtualThreadExecutor(@NotNull String name) {
+        Preconditions.checkNotNull(name, "name");
+
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + " #", 1).factory());
+    }
+
+    @Override
+    public void execute(@NotNull Runnable runnable, @NotNull TaskPriority priority) {
+        Preconditions.checkNotNull(runnable, "runnable");
+        Preconditions.checkNotNull(priority, "priority");
+
+        if (executor.isShutdown()) throw new RejectedExecutionException("Executor has been shut down");
+
+        executor.execute(() -> {
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                logger.warn("<yellow>Uncaught error in scheduled task: {}", t.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public int getQueueDepth(@NotNull TaskPriority priority) {
+        Preconditions.checkNotNull(priority, "priority");
+        return 0;
+    }
+
+    @NotNull
+    @Override
+    public Map<TaskPriority, Integer> getQueueDepths() {
+        Map<TaskPriority, Integer> depths = new EnumMap<>(TaskPriority.class);
+        for (TaskPriority priority : TaskPriority.values()) depths.put(priority, 0);
+        return depths;
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @NotNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
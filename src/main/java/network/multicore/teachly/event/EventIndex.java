@@ -0,0 +1,158 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2025, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.event;
+
+import com.google.common.base.Preconditions;
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable name to event class lookup.
+ * Events can be resolved by simple name, fully qualified name or canonical name, falling back to a case-insensitive match.
+ * Names shared by more than one event class resolve to an ambiguous {@link Resolution} instead of silently picking one.
+ * Every {@link Resolution} is created when the index is built, so lookups never allocate.
+ */
+public final class EventIndex {
+    public static final EventIndex EMPTY = new EventIndex(List.of());
+    private static final Resolution MISSING = new Resolution(Optional.empty(), List.of());
+    private final Map<String, Resolution> exact;
+    private final String[] foldedKeys;
+    private final Resolution[] foldedValues;
+    private final int mask;
+    private final int size;
+
+    public EventIndex(@NotNull Collection<Class<? extends Event>> events) {
+        Preconditions.checkNotNull(events, "events");
+
+        Map<String, Set<Class<? extends Event>>> exactNames = new HashMap<>();
+        Map<String, Set<Class<? extends Event>>> foldedNames = new HashMap<>();
+        Set<Class<? extends Event>> unique = new LinkedHashSet<>(events);
+
+        for (Class<? extends Event> event : unique) {
+            for (String name : namesOf(event)) {
+                exactNames.computeIfAbsent(name, k -> new LinkedHashSet<>()).add(event);
+                foldedNames.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new LinkedHashSet<>()).add(event);
+            }
+        }
+
+        Map<String, Resolution> exact = new HashMap<>(exactNames.size() * 2);
+        exactNames.forEach((name, candidates) -> exact.put(name, Resolution.of(candidates)));
+        this.exact = Map.copyOf(exact);
+
+        int capacity = Integer.highestOneBit(Math.max(foldedNames.size(), 1)) << 2;
+        this.foldedKeys = new String[capacity];
+        this.foldedValues = new Resolution[capacity];
+        this.mask = capacity - 1;
+
+        foldedNames.forEach((name, candidates) -> {
+            int slot = foldedHash(name) & mask;
+            while (foldedKeys[slot] != null) slot = (slot + 1) & mask;
+
+            foldedKeys[slot] = name;
+            foldedValues[slot] = Resolution.of(candidates);
+        });
+
+        this.size = unique.size();
+    }
+
+    /**
+     * Resolve an event name.
+     *
+     * @param name The simple, fully qualified or canonical name of the event, in any case.
+     * @return The {@link Resolution} of the name. Never null.
+     */
+    @NotNull
+    public Resolution resolve(@Nullable String name) {
+        if (name == null) return MISSING;
+
+        Resolution resolution = exact.get(name);
+        if (resolution != null) return resolution;
+
+        int slot = foldedHash(name) & mask;
+        String key;
+        while ((key = foldedKeys[slot]) != null) {
+            if (key.length() == name.length() && key.regionMatches(true, 0, name, 0, name.length())) return foldedValues[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        return MISSING;
+    }
+
+    /**
+     * Return the number of distinct event classes in the index.
+     *
+     * @return The number of event classes.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static Set<String> namesOf(@NotNull Class<? extends Event> event) {
+        Set<String> names = new LinkedHashSet<>();
+        names.add(event.getSimpleName());
+        names.add(event.getName());
+        if (event.getCanonicalName() != null) names.add(event.getCanonicalName());
+        return names;
+    }
+
+    private static int foldedHash(@NotNull String name) {
+        int hash = 0;
+
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The result of resolving an event name.
+     *
+     * @param event      The resolved event class. Empty if the name is unknown or ambiguous.
+     * @param candidates The fully qualified names of every event class matching the name.
+     */
+    public record Resolution(@NotNull Optional<Class<? extends Event>> event, @NotNull List<String> candidates) {
+
+        private static Resolution of(@NotNull Set<Class<? extends Event>> candidates) {
+            List<String> names = candidates.stream().map(Class::getName).sorted().collect(Collectors.toUnmodifiableList());
+            return new Resolution(candidates.size() == 1 ? Optional.of(candidates.iterator().next()) : Optional.empty(), names);
+        }
+
+        public boolean isResolved() {
+            return event.isPresent();
+        }
+
+        public boolean isAmbiguous() {
+            return candidates.size() > 1;
+        }
+    }
+}
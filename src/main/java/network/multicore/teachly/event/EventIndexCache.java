@@ -0,0 +1,173 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2025, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.event;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.utils.Logger;
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * On-disk cache of the event classes discovered by {@link EventRegistry}.
+ * The cache is keyed by a fingerprint of the jars the events are loaded from,
+ * so it is invalidated as soon as the server or the plugin is updated.
+ */
+class EventIndexCache {
+    private static final int MAGIC = 0x54454943;
+    private static final int VERSION = 1;
+    private final Logger logger = Logger.getLogger();
+    private final File file;
+    private final String fingerprint;
+
+    EventIndexCache(@NotNull File file, @NotNull Class<?>... anchors) {
+        Preconditions.checkNotNull(file, "file");
+        Preconditions.checkNotNull(anchors, "anchors");
+
+        this.file = file;
+        this.fingerprint = fingerprint(anchors);
+    }
+
+    /**
+     * Load the cached event classes.
+     *
+     * @param classLoader The class loader used to resolve the cached class names.
+     * @return The cached event classes or null if the cache is missing, stale or unreadable.
+     */
+    @Nullable
+    List<Class<? extends Event>> load(@NotNull ClassLoader classLoader) {
+        Preconditions.checkNotNull(classLoader, "classLoader");
+        if (fingerprint == null || !file.isFile()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (!fingerprint.equals(in.readUTF())) return null;
+
+            int size = in.readInt();
+            List<Class<? extends Event>> events = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                Class<?> c = Class.forName(in.readUTF(), false, classLoader);
+                if (!Event.class.isAssignableFrom(c)) return null;
+
+                events.add(c.asSubclass(Event.class));
+            }
+
+            return events;
+        } catch (IOException | ClassNotFoundException | LinkageError e) {
+            logger.warn("Could not read event cache, events will be scanned again: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the event classes to the cache file.
+     *
+     * @param events The event classes to cache.
+     */
+    void save(@NotNull Collection<Class<? extends Event>> events) {
+        Preconditions.checkNotNull(events, "events");
+        if (fingerprint == null) return;
+
+        File tmp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(events.size());
+
+            for (Class<? extends Event> event : events) {
+                out.writeUTF(event.getName());
+            }
+        } catch (IOException e) {
+            logger.warn("Could not write event cache: {}", e.getMessage());
+            tmp.delete();
+            return;
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write event cache: {}", e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Compute a fingerprint of the jars containing the given classes.
+     * Only path, size and modification time are hashed, so the fingerprint is cheap to compute even for the server jar.
+     *
+     * @param anchors Classes whose code source identifies a jar to fingerprint.
+     * @return The fingerprint or null if any of the jars cannot be located.
+     */
+    @Nullable
+    private static String fingerprint(@NotNull Class<?>... anchors) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Set<String> seen = new HashSet<>();
+
+            for (Class<?> anchor : anchors) {
+                CodeSource source = anchor.getProtectionDomain().getCodeSource();
+                if (source == null || source.getLocation() == null) return null;
+
+                File jar = new File(source.getLocation().toURI());
+                if (!seen.add(jar.getAbsolutePath())) continue;
+
+                digest.update(jar.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+                digest.update(longToBytes(jar.length()));
+                digest.update(longToBytes(jar.lastModified()));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | URISyntaxException | IllegalArgumentException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static byte[] longToBytes(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+
+        return bytes;
+    }
+}
@@ -1,6 +1,7 @@
 package network.multicore.teachly.event;
 
 import com.google.common.base.Preconditions;
+import network.multicore.teachly.Teachly;
 import network.multicore.teachly.js.Script;
 import network.multicore.teachly.js.exceptions.JSException;
 import network.multicore.teachly.utils.Logger;
@@ -11,14 +12,20 @@ import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
 
 public class EventListener implements Listener {
+    private static final ListenerCallback[] NO_CALLBACKS = new ListenerCallback[0];
     private final Logger logger = Logger.getLogger();
-    private final List<ListenerCallback> callbacks = new ArrayList<>();
+    private final Object lock = new Object();
+    private volatile ListenerCallback[] callbacks = NO_CALLBACKS;
     private final EventPriority priority;
+    private final HandlerList handlerList;
 
     public EventListener(@NotNull Plugin plugin, @NotNull Class<? extends Event> eventClass, @NotNull EventPriority priority) {
         Preconditions.checkNotNull(plugin, "plugin");
@@ -26,56 +33,117 @@ public class EventListener implements Listener {
         Preconditions.checkNotNull(priority, "priority");
 
         this.priority = priority;
+        this.handlerList = getHandlerList(eventClass);
 
         Bukkit.getPluginManager().registerEvent(eventClass, this, priority, (listener, event) -> call(event), plugin);
     }
 
+    /**
+     * Create a listener that is not registered to Bukkit.
+     * Events are delivered to it by {@link EventRegistry}.
+     *
+     * @param priority The priority of the listener.
+     */
+    EventListener(@NotNull EventPriority priority) {
+        Preconditions.checkNotNull(priority, "priority");
+
+        this.priority = priority;
+        this.handlerList = null;
+    }
+
     public void registerCallback(@NotNull ListenerCallback callback) {
-        synchronized (callbacks) {
-            callbacks.add(callback);
+        synchronized (lock) {
+            ListenerCallback[] updated = Arrays.copyOf(callbacks, callbacks.length + 1);
+            updated[updated.length - 1] = callback;
+            callbacks = updated;
         }
     }
 
     public void unregisterCallback(@NotNull Script script) {
-        synchronized (callbacks) {
-            callbacks.removeIf(callback -> callback.script.equals(script));
+        synchronized (lock) {
+            callbacks = Arrays.stream(callbacks)
+                    .filter(callback -> !callback.script.equals(script))
+                    .toArray(ListenerCallback[]::new);
         }
     }
 
     public void unregisterAllCallbacks() {
-        synchronized (callbacks) {
-            callbacks.clear();
+        synchronized (lock) {
+            callbacks = NO_CALLBACKS;
         }
     }
 
     public boolean isEmpty() {
-        return callbacks.isEmpty();
+        return callbacks.length == 0;
     }
 
     public int size() {
-        return callbacks.size();
+        return callbacks.length;
     }
 
     public EventPriority getPriority() {
         return priority;
     }
 
+    public HandlerList getHandlerList() {
+        return handlerList;
+    }
+
     public void unregister() {
-        HandlerList.unregisterAll(this);
+        if (handlerList != null) handlerList.unregister(this);
     }
 
-    private void call(@NotNull Event event) {
-        synchronized (callbacks) {
-            callbacks.forEach(callback -> {
-                try {
-                    callback.script.call(callback.callback, event);
-                } catch (JSException e) {
-                    logger.warn("Error calling callback {} for event {} in script {}: {}", callback.callback, event.getClass().getSimpleName(), callback.script.getId(), e.getMessage());
-                }
-            });
+    void call(@NotNull Event event) {
+        for (ListenerCallback callback : callbacks) {
+            try {
+                callback.script.call(callback.callback, event);
+            } catch (JSException e) {
+                logger.warn("Error calling callback {} for event {} in script {}: {}", callback.callback, event.getClass().getSimpleName(), callback.script.getId(), e.getMessage());
+                Teachly.getInstance().logActivity("error", "script", callback.script.getId(), "stage", "event", "event", event.getClass().getName(), "callback", callback.callback, "message", e.getMessage());
+            }
         }
     }
 
+    void replay(@NotNull RecordedEvent event, @Nullable Set<Script> scripts, @NotNull Map<String, EventReplay.CallbackStats> stats) {
+        String eventName = event.getType().substring(event.getType().lastIndexOf('.') + 1);
+
+        for (ListenerCallback callback : callbacks) {
+            if (scripts != null && !scripts.contains(callback.script)) continue;
+
+            boolean failed = false;
+            long start = System.nanoTime();
+
+            try {
+                callback.script.call(callback.callback, event);
+            } catch (JSException e) {
+                failed = true;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            stats.computeIfAbsent(callback.script.getId() + "/" + callback.callback + "/" + eventName, k -> new EventReplay.CallbackStats(callback.script.getId(), callback.callback, eventName))
+                    .record(elapsed, failed);
+        }
+    }
+
+    @NotNull
+    static HandlerList getHandlerList(@NotNull Class<? extends Event> eventClass) {
+        Class<?> c = eventClass;
+
+        while (c != null && Event.class.isAssignableFrom(c)) {
+            try {
+                Method method = c.getDeclaredMethod("getHandlerList");
+                method.setAccessible(true);
+                return (HandlerList) method.invoke(null);
+            } catch (NoSuchMethodException e) {
+                c = c.getSuperclass();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Unable to get the handler list of event " + eventClass.getName(), e);
+            }
+        }
+
+        throw new IllegalArgumentException("Event " + eventClass.getName() + " does not declare a static getHandlerList method");
+    }
+
     public record ListenerCallback(@NotNull Script script, @NotNull String callback) {
     }
 }
\ No newline at end of file
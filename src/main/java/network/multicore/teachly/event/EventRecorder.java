@@ -0,0 +1,282 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2025, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.event;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.utils.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Records the events scripts are subscribed to into a compact binary log that can be replayed with {@link EventReplay}.
+ * For every event the recorder captures the values of its public getters. Getters returning other objects, like the player,
+ * are captured one level deep through a small set of identifying getters (name, UUID, type, coordinates, amount).
+ */
+public class EventRecorder implements Listener {
+    static final int MAGIC = 0x54455643;
+    static final int VERSION = 2;
+    static final byte RECORD_SCHEMA = 0;
+    static final byte RECORD_EVENT = 1;
+    static final byte VALUE_NULL = 0;
+    static final byte VALUE_BOOLEAN = 1;
+    static final byte VALUE_LONG = 2;
+    static final byte VALUE_DOUBLE = 3;
+    static final byte VALUE_STRING = 4;
+    static final byte VALUE_NESTED = 5;
+    private static final Set<String> IGNORED_GETTERS = Set.of("getClass", "getHandlers", "getHandlerList");
+    private static final Set<String> NESTED_GETTERS = Set.of("getName", "getUniqueId", "getType", "getX", "getY", "getZ", "getYaw", "getPitch", "getAmount");
+    private static final ClassValue<List<Field>> SCHEMAS = new ClassValue<>() {
+        @Override
+        protected List<Field> computeValue(@NotNull Class<?> type) {
+            return fieldsOf(type, false);
+        }
+    };
+    private final Logger logger = Logger.getLogger();
+    private final Plugin plugin;
+    private final Map<Class<?>, Integer> schemaIds = new HashMap<>();
+    private DataOutputStream out;
+    private File file;
+    private long startNanos;
+    private long recorded;
+    private volatile boolean recording = false;
+
+    public EventRecorder(@NotNull Plugin plugin) {
+        Preconditions.checkNotNull(plugin, "plugin");
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start recording events to a file.
+     *
+     * @param file   The file to write the log to.
+     * @param events The event classes to record.
+     * @throws IOException if the file cannot be created.
+     */
+    public synchronized void start(@NotNull File file, @NotNull Collection<Class<? extends Event>> events) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+        Preconditions.checkNotNull(events, "events");
+        Preconditions.checkState(out == null, "Recorder is already running");
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) throw new IOException("Could not create folder " + parent.getName());
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+
+        this.file = file;
+        this.startNanos = System.nanoTime();
+        this.recorded = 0;
+        this.recording = true;
+        schemaIds.clear();
+
+        for (Class<? extends Event> event : events) {
+            if (InternalEvent.class.isAssignableFrom(event)) continue;
+            Bukkit.getPluginManager().registerEvent(event, this, EventPriority.MONITOR, (listener, e) -> record(e), plugin);
+        }
+    }
+
+    /**
+     * Stop recording and close the log file.
+     *
+     * @return The number of recorded events.
+     */
+    public synchronized long stop() {
+        HandlerList.unregisterAll(this);
+        recording = false;
+        if (out == null) return 0;
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warn("<yellow>Could not close event log {}: {}", file.getName(), e.getMessage());
+        }
+
+        out = null;
+        file = null;
+        return recorded;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    @Nullable
+    public synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * Append an event to the log. Does nothing if the recorder is not running.
+     *
+     * @param event The event to record.
+     */
+    public void record(@NotNull Event event) {
+        if (!recording) return;
+
+        synchronized (this) {
+            if (out != null) write(event, System.nanoTime() - startNanos);
+        }
+    }
+
+    private void write(@NotNull Event event, long nanos) {
+        Class<? extends Event> type = event.getClass();
+        List<Field> schema = SCHEMAS.get(type);
+
+        try {
+            Integer id = schemaIds.get(type);
+            if (id == null) {
+                id = schemaIds.size();
+                schemaIds.put(type, id);
+                writeSchema(id, type, schema);
+            }
+
+            out.writeByte(RECORD_EVENT);
+            out.writeShort(id);
+            out.writeLong(nanos);
+            writeValues(event, schema);
+            recorded++;
+        } catch (IOException e) {
+            logger.warn("<yellow>Could not write to event log {}, recording stopped: {}", file.getName(), e.getMessage());
+            stop();
+        }
+    }
+
+    private void writeSchema(int id, @NotNull Class<?> type, @NotNull List<Field> schema) throws IOException {
+        out.writeByte(RECORD_SCHEMA);
+        out.writeShort(id);
+        out.writeUTF(type.getName());
+        writeFields(schema);
+    }
+
+    private void writeFields(@NotNull List<Field> fields) throws IOException {
+        out.writeShort(fields.size());
+
+        for (Field field : fields) {
+            out.writeUTF(field.name());
+            out.writeBoolean(field.nested() != null);
+
+            if (field.nested() != null) {
+                out.writeUTF(field.getter().getReturnType().getName());
+                writeFields(field.nested());
+            }
+        }
+    }
+
+    private void writeValues(@NotNull Object target, @NotNull List<Field> fields) throws IOException {
+        for (Field field : fields) {
+            Object value;
+
+            try {
+                value = field.getter().invoke(target);
+            } catch (Throwable t) {
+                value = null;
+            }
+
+            if (value == null) {
+                out.writeByte(VALUE_NULL);
+            } else if (field.nested() != null) {
+                out.writeByte(VALUE_NESTED);
+                writeValues(value, field.nested());
+            } else if (value instanceof Boolean b) {
+                out.writeByte(VALUE_BOOLEAN);
+                out.writeBoolean(b);
+            } else if (value instanceof Double || value instanceof Float) {
+                out.writeByte(VALUE_DOUBLE);
+                out.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof Number n) {
+                out.writeByte(VALUE_LONG);
+                out.writeLong(n.longValue());
+            } else if (value instanceof Enum<?> e) {
+                out.writeByte(VALUE_STRING);
+                writeString(e.name());
+            } else {
+                out.writeByte(VALUE_STRING);
+                writeString(value.toString());
+            }
+        }
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 string. Unlike {@link DataOutputStream#writeUTF(String)} it has no 64 KB limit.
+     */
+    private void writeString(@NotNull String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static List<Field> fieldsOf(@NotNull Class<?> type, boolean nested) {
+        List<Field> fields = new ArrayList<>();
+
+        for (Method method : type.getMethods()) {
+            if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())) continue;
+
+            String name = method.getName();
+            if (!(name.startsWith("get") || name.startsWith("is")) || IGNORED_GETTERS.contains(name)) continue;
+            if (nested && !NESTED_GETTERS.contains(name)) continue;
+
+            if (isSimple(method.getReturnType())) {
+                fields.add(new Field(name, method, null));
+            } else if (!nested) {
+                List<Field> nestedFields = fieldsOf(method.getReturnType(), true);
+                if (!nestedFields.isEmpty()) fields.add(new Field(name, method, nestedFields));
+            }
+        }
+
+        fields.sort(Comparator.comparing(Field::name));
+        return List.copyOf(fields);
+    }
+
+    private static boolean isSimple(@NotNull Class<?> type) {
+        return type.isPrimitive() && type != void.class
+                || Number.class.isAssignableFrom(type)
+                || type == Boolean.class
+                || type == Character.class
+                || type == String.class
+                || type == UUID.class
+                || type.isEnum();
+    }
+
+    private record Field(@NotNull String name, @NotNull Method getter, @Nullable List<Field> nested) {
+    }
+}
@@ -31,28 +31,55 @@ import com.google.common.base.Preconditions;
 import network.multicore.teachly.Teachly;
 import network.multicore.teachly.js.Script;
 import network.multicore.teachly.utils.Logger;
+import org.bukkit.Bukkit;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
+import org.bukkit.plugin.RegisteredListener;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.reflections.Reflections;
 import org.reflections.scanners.Scanners;
 import org.reflections.util.ConfigurationBuilder;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EventRegistry implements Listener {
+    private static final String CACHE_FILE = "events.cache";
     private final Teachly plugin;
     private final Logger logger = Logger.getLogger();
-    private final Map<String, Class<? extends Event>> events = new HashMap<>();
+    private volatile EventIndex events = EventIndex.EMPTY;
+    private final EventRecorder recorder;
     private final Map<EventGroup, EventListener> listeners = new HashMap<>();
+    private final Map<Script, Set<EventGroup>> scriptGroups = new HashMap<>();
+    private final Set<EventGroup> pendingRemoval = new HashSet<>();
+    private volatile Map<Class<? extends Event>, EventListener[]> internalListeners = Map.of();
+    private volatile Map<Class<? extends Event>, EventListener[]> internalDispatch = new ConcurrentHashMap<>();
+    private final Set<Class<? extends Event>> bridgedEvents = new HashSet<>();
+    private final ThreadLocal<Event> forwarding = new ThreadLocal<>();
+    private int batchDepth = 0;
 
     public EventRegistry(@NotNull Teachly plugin) {
         this.plugin = plugin;
+        this.recorder = new EventRecorder(plugin);
     }
 
     public boolean fetchEvents() {
+        EventIndexCache cache = new EventIndexCache(new File(plugin.getDataFolder(), CACHE_FILE), Event.class, Bukkit.getServer().getClass(), EventRegistry.class);
+
+        List<Class<? extends Event>> cached = cache.load(EventRegistry.class.getClassLoader());
+        if (cached != null) {
+            events = new EventIndex(cached);
+            return true;
+        }
+
+        List<Class<? extends Event>> scanned = new ArrayList<>();
+
         try {
             Reflections reflections = new Reflections(new ConfigurationBuilder()
                     .forPackages("org.bukkit.event", "io.papermc.paper.event", "network.multicore.teachly.event")
@@ -60,12 +87,14 @@ public class EventRegistry implements Listener {
 
             reflections.getSubTypesOf(Event.class).forEach(c -> {
                 if (c.isInterface() || Modifier.isAbstract(c.getModifiers())) return;
-                events.put(c.getSimpleName(), c);
+                scanned.add(c);
             });
         } catch (Throwable t) {
             return false;
         }
 
+        events = new EventIndex(scanned);
+        cache.save(scanned);
         return true;
     }
 
@@ -74,8 +103,12 @@ public class EventRegistry implements Listener {
     }
 
     public Optional<Class<? extends Event>> getEventClass(String name) {
-        if (name == null) return Optional.empty();
-        return Optional.of(events.get(name));
+        return events.resolve(name).event();
+    }
+
+    @NotNull
+    public EventIndex.Resolution resolveEvent(String name) {
+        return events.resolve(name);
     }
 
     @NotNull
@@ -90,15 +123,74 @@ public class EventRegistry implements Listener {
     }
 
     public void close() {
+        recorder.stop();
+
         synchronized (listeners) {
+            Set<HandlerList> handlerLists = new HashSet<>();
+
             listeners.forEach((event, listener) -> {
                 listener.unregisterAllCallbacks();
                 listener.unregister();
+                if (listener.getHandlerList() != null) handlerLists.add(listener.getHandlerList());
             });
             listeners.clear();
+            internalListeners = Map.of();
+            internalDispatch = new ConcurrentHashMap<>();
+            bridgedEvents.forEach(event -> {
+                HandlerList handlerList = EventListener.getHandlerList(event);
+                handlerList.unregister(this);
+                handlerLists.add(handlerList);
+            });
+            bridgedEvents.clear();
+            scriptGroups.clear();
+            pendingRemoval.clear();
+            batchDepth = 0;
+
+            handlerLists.forEach(HandlerList::bake);
         }
 
-        events.clear();
+        events = EventIndex.EMPTY;
+    }
+
+    /**
+     * Start a batch of listener changes.
+     * Until the matching {@link #endBatch()} call, listeners left without callbacks stay registered to Bukkit,
+     * so scripts re-subscribing to the same events reuse them instead of unregistering and registering again.
+     * Batches can be nested.
+     */
+    public void beginBatch() {
+        synchronized (listeners) {
+            batchDepth++;
+        }
+    }
+
+    /**
+     * End a batch of listener changes started with {@link #beginBatch()}.
+     * When the outermost batch ends, listeners that are still empty are unregistered
+     * and each affected {@link HandlerList} is baked once.
+     */
+    public void endBatch() {
+        synchronized (listeners) {
+            if (batchDepth == 0 || --batchDepth > 0) return;
+
+            Set<HandlerList> handlerLists = new HashSet<>();
+            boolean internalChanged = false;
+
+            for (EventGroup group : pendingRemoval) {
+                EventListener listener = listeners.get(group);
+                if (listener == null || !listener.isEmpty()) continue;
+
+                listener.unregister();
+                listeners.remove(group);
+
+                if (isInternal(group.event())) internalChanged = true;
+                else handlerLists.add(listener.getHandlerList());
+            }
+
+            pendingRemoval.clear();
+            handlerLists.forEach(HandlerList::bake);
+            if (internalChanged) rebuildInternalListeners();
+        }
     }
 
     public void registerListener(@NotNull Script script, @NotNull String callback, @NotNull Class<? extends Event> event, @NotNull EventPriority priority) {
@@ -109,9 +201,22 @@ public class EventRegistry implements Listener {
 
         synchronized (listeners) {
             EventGroup group = new EventGroup(event, priority);
-            EventListener listener = listeners.getOrDefault(group, new EventListener(plugin, event, priority));
+            EventListener listener = listeners.get(group);
+
+            if (listener == null) {
+                if (isInternal(event)) {
+                    listener = new EventListener(priority);
+                    listeners.put(group, listener);
+                    rebuildInternalListeners();
+                } else {
+                    listener = new EventListener(plugin, event, priority);
+                    listeners.put(group, listener);
+                }
+            }
+
             listener.registerCallback(new EventListener.ListenerCallback(script, callback));
-            listeners.put(group, listener);
+            scriptGroups.computeIfAbsent(script, s -> new HashSet<>()).add(group);
+            pendingRemoval.remove(group);
 
             logger.info("<green>Script <yellow>{}</yellow> registered listener <yellow>{}</yellow> for event <yellow>{}</yellow> with priority <yellow>{}</yellow>", script.getId(), callback, event.getSimpleName(), priority);
         }
@@ -121,22 +226,211 @@ public class EventRegistry implements Listener {
         Preconditions.checkNotNull(script);
 
         synchronized (listeners) {
-            List<EventGroup> toBeRemoved = new ArrayList<>();
+            Set<EventGroup> groups = scriptGroups.remove(script);
 
-            listeners.forEach((group, listener) -> {
-                listener.unregisterCallback(script);
-                if (listener.isEmpty()) {
-                    listener.unregister();
-                    toBeRemoved.add(group);
-                }
-            });
+            if (groups != null) {
+                for (EventGroup group : groups) {
+                    EventListener listener = listeners.get(group);
+                    if (listener == null) continue;
+
+                    listener.unregisterCallback(script);
+                    if (!listener.isEmpty()) continue;
 
-            toBeRemoved.forEach(listeners::remove);
+                    if (batchDepth > 0) {
+                        pendingRemoval.add(group);
+                    } else {
+                        listener.unregister();
+                        listeners.remove(group);
+                        if (isInternal(group.event())) rebuildInternalListeners();
+                    }
+                }
+            }
         }
 
         logger.info("<dark_green>Script <yellow>{}</yellow> unregistered all listeners", script.getId());
     }
 
+    /**
+     * Call an event.
+     * Events implementing {@link InternalEvent} are delivered directly to the script listeners of their class and superclasses,
+     * in priority order, and then forwarded to Bukkit only if another plugin is listening to them.
+     * Any other event is called through Bukkit's {@link org.bukkit.plugin.PluginManager}.
+     *
+     * @param event The event to call.
+     * @param <T>   The type of the event.
+     * @return The same event, after every listener has been called.
+     * @throws IllegalStateException if a synchronous event is called from another thread than the main one, or vice versa.
+     */
+    public <T extends Event> T callEvent(@NotNull T event) {
+        Preconditions.checkNotNull(event, "event");
+
+        if (!(event instanceof InternalEvent)) {
+            Bukkit.getPluginManager().callEvent(event);
+            return event;
+        }
+
+        if (event.isAsynchronous() && Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException(event.getEventName() + " may only be triggered asynchronously.");
+        } else if (!event.isAsynchronous() && !Bukkit.isPrimaryThread() && !Bukkit.isStopping()) {
+            throw new IllegalStateException(event.getEventName() + " may only be triggered synchronously.");
+        }
+
+        dispatchInternal(event);
+
+        if (hasOtherListeners(event)) {
+            Event previous = forwarding.get();
+            forwarding.set(event);
+
+            try {
+                Bukkit.getPluginManager().callEvent(event);
+            } finally {
+                forwarding.set(previous);
+            }
+        }
+
+        return event;
+    }
+
+    /**
+     * Start recording every event scripts are currently subscribed to.
+     *
+     * @param file The file to write the event log to.
+     * @throws IOException if the file cannot be created.
+     */
+    public void startRecording(@NotNull File file) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+
+        Set<Class<? extends Event>> subscribed = new HashSet<>();
+        synchronized (listeners) {
+            listeners.keySet().forEach(group -> subscribed.add(group.event()));
+        }
+
+        recorder.start(file, subscribed);
+    }
+
+    /**
+     * Stop recording events.
+     *
+     * @return The number of recorded events.
+     */
+    public long stopRecording() {
+        return recorder.stop();
+    }
+
+    public boolean isRecording() {
+        return recorder.isRecording();
+    }
+
+    /**
+     * Deliver a recorded event to the script listeners of its event class, in priority order.
+     *
+     * @param event   The recorded event.
+     * @param scripts The scripts whose callbacks are invoked, or null for every script.
+     * @param stats   The callback timings to update.
+     * @return False if the recorded event class is unknown.
+     */
+    boolean replay(@NotNull RecordedEvent event, @Nullable Set<Script> scripts, @NotNull Map<String, EventReplay.CallbackStats> stats) {
+        Optional<Class<? extends Event>> eventClass = events.resolve(event.getType()).event();
+        if (eventClass.isEmpty()) return false;
+
+        List<EventListener> targets = new ArrayList<>();
+        synchronized (listeners) {
+            for (EventPriority priority : EventPriority.values()) {
+                EventListener listener = listeners.get(new EventGroup(eventClass.get(), priority));
+                if (listener != null) targets.add(listener);
+            }
+        }
+
+        targets.forEach(listener -> listener.replay(event, scripts, stats));
+        return true;
+    }
+
+    private void dispatchInternal(@NotNull Event event) {
+        recorder.record(event);
+
+        for (EventListener listener : internalDispatch.computeIfAbsent(event.getClass(), this::resolveInternalListeners)) {
+            listener.call(event);
+        }
+    }
+
+    /**
+     * Collect the script listeners of an event class and of its superclasses, in priority order.
+     */
+    @NotNull
+    private EventListener[] resolveInternalListeners(@NotNull Class<? extends Event> event) {
+        Map<Class<? extends Event>, EventListener[]> internalListeners = this.internalListeners;
+        List<EventListener> resolved = new ArrayList<>();
+
+        for (Class<?> c = event; c != null && Event.class.isAssignableFrom(c); c = c.getSuperclass()) {
+            EventListener[] classListeners = internalListeners.get(c);
+            if (classListeners != null) resolved.addAll(Arrays.asList(classListeners));
+        }
+
+        resolved.sort(Comparator.comparingInt(listener -> listener.getPriority().getSlot()));
+        return resolved.toArray(EventListener[]::new);
+    }
+
+    /**
+     * Deliver an internal event called through Bukkit instead of {@link #callEvent(Event)} to the script listeners.
+     */
+    private void bridge(@NotNull Event event) {
+        if (!(event instanceof InternalEvent) || forwarding.get() == event) return;
+        dispatchInternal(event);
+    }
+
+    private boolean hasOtherListeners(@NotNull Event event) {
+        for (RegisteredListener listener : event.getHandlers().getRegisteredListeners()) {
+            if (listener.getListener() != this) return true;
+        }
+
+        return false;
+    }
+
+    private void rebuildInternalListeners() {
+        Map<Class<? extends Event>, List<EventListener>> grouped = new HashMap<>();
+
+        listeners.forEach((group, listener) -> {
+            if (isInternal(group.event())) grouped.computeIfAbsent(group.event(), e -> new ArrayList<>()).add(listener);
+        });
+
+        Map<Class<? extends Event>, EventListener[]> dispatch = new HashMap<>();
+        grouped.forEach((event, eventListeners) -> {
+            eventListeners.sort(Comparator.comparingInt(listener -> listener.getPriority().getSlot()));
+            dispatch.put(event, eventListeners.toArray(EventListener[]::new));
+        });
+
+        internalListeners = Map.copyOf(dispatch);
+        // Replaced rather than cleared, so a dispatch resolving against the previous listeners cannot refill it
+        internalDispatch = new ConcurrentHashMap<>();
+        updateBridges(dispatch.keySet());
+    }
+
+    /**
+     * Keep one Bukkit listener for each internal event scripts listen to,
+     * so the event still reaches them when it is called through Bukkit's {@link org.bukkit.plugin.PluginManager}.
+     */
+    private void updateBridges(@NotNull Set<Class<? extends Event>> events) {
+        Iterator<Class<? extends Event>> iterator = bridgedEvents.iterator();
+        while (iterator.hasNext()) {
+            Class<? extends Event> event = iterator.next();
+            if (events.contains(event)) continue;
+
+            HandlerList handlerList = EventListener.getHandlerList(event);
+            handlerList.unregister(this);
+            handlerList.bake();
+            iterator.remove();
+        }
+
+        for (Class<? extends Event> event : events) {
+            if (!bridgedEvents.add(event)) continue;
+            Bukkit.getPluginManager().registerEvent(event, this, EventPriority.LOWEST, (listener, e) -> bridge(e), plugin);
+        }
+    }
+
+    private static boolean isInternal(@NotNull Class<? extends Event> event) {
+        return InternalEvent.class.isAssignableFrom(event);
+    }
+
     private static final class EventGroup {
         @NotNull
         private final Class<? extends Event> event;
@@ -0,0 +1,314 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2025, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.event;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.concurrent.TaskPriority;
+import network.multicore.teachly.concurrent.TickScheduler;
+import network.multicore.teachly.concurrent.TickTask;
+import network.multicore.teachly.js.Script;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Replays an event log written by {@link EventRecorder} through the {@link EventRegistry} listeners of the loaded scripts.
+ * Events are replayed back to back, ignoring the recorded timing, and every callback invocation is timed.
+ * The replay runs on the main thread as a LOW priority {@link TickScheduler} job that stops at the deadline of the tick,
+ * so it only takes what is left of the main thread budget and a long recording does not stall the server.
+ * While a chunk runs, {@link #isReplaying()} is true and the plugin interface skips the calls that reach real players.
+ */
+public class EventReplay {
+    private static boolean replaying = false;
+    private final EventRegistry registry;
+    private final TickScheduler tickScheduler;
+
+    public EventReplay(@NotNull EventRegistry registry, @NotNull TickScheduler tickScheduler) {
+        Preconditions.checkNotNull(registry, "registry");
+        Preconditions.checkNotNull(tickScheduler, "tickScheduler");
+
+        this.registry = registry;
+        this.tickScheduler = tickScheduler;
+    }
+
+    /**
+     * Replay recorded events, a chunk per tick.
+     * Only the time spent replaying is measured, not the time between two chunks.
+     *
+     * @param events  The recorded events, as returned by {@link #read(File)}.
+     * @param scripts The scripts whose callbacks are invoked, or null to invoke every subscribed script.
+     * @return A future completed on the main thread with the {@link Report} of the replay.
+     */
+    @NotNull
+    public CompletableFuture<Report> replay(@NotNull List<RecordedEvent> events, @Nullable Set<Script> scripts) {
+        Preconditions.checkNotNull(events, "events");
+
+        Replay replay = new Replay(List.copyOf(events), scripts == null ? null : Set.copyOf(scripts));
+        replay.task = tickScheduler.submitTimer(replay, 0, 1, TaskPriority.LOW);
+        return replay.result;
+    }
+
+    /**
+     * Return whether script callbacks are currently being invoked by a replay.
+     *
+     * @return True on the main thread while a replay chunk runs.
+     */
+    public static boolean isReplaying() {
+        return replaying && Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Read every event of an event log.
+     *
+     * @param file The event log.
+     * @return The recorded events, in recording order.
+     * @throws IOException if the log cannot be read or is not an event log.
+     */
+    @NotNull
+    public static List<RecordedEvent> read(@NotNull File file) throws IOException {
+        Preconditions.checkNotNull(file, "file");
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != EventRecorder.MAGIC) throw new IOException("Not an event log");
+
+            int version = in.readInt();
+            if (version < 1 || version > EventRecorder.VERSION) throw new IOException("Unsupported event log version");
+            in.readLong();
+
+            Map<Integer, Schema> schemas = new HashMap<>();
+            List<RecordedEvent> events = new ArrayList<>();
+
+            while (true) {
+                int tag = in.read();
+                if (tag == -1) break;
+
+                switch (tag) {
+                    case EventRecorder.RECORD_SCHEMA -> {
+                        int id = in.readUnsignedShort();
+                        String type = in.readUTF();
+                        schemas.put(id, new Schema(type, readFields(in)));
+                    }
+                    case EventRecorder.RECORD_EVENT -> {
+                        Schema schema = schemas.get(in.readUnsignedShort());
+                        if (schema == null) throw new IOException("Event log is corrupted: unknown schema");
+
+                        long nanos = in.readLong();
+                        events.add(new RecordedEvent(schema.type(), nanos, readValues(in, schema.fields(), version)));
+                    }
+                    default -> throw new IOException("Event log is corrupted: unknown record " + tag);
+                }
+            }
+
+            return events;
+        } catch (EOFException e) {
+            throw new IOException("Event log is truncated", e);
+        }
+    }
+
+    @NotNull
+    private static List<Field> readFields(@NotNull DataInputStream in) throws IOException {
+        int size = in.readUnsignedShort();
+        List<Field> fields = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            String name = in.readUTF();
+
+            if (in.readBoolean()) {
+                String type = in.readUTF();
+                fields.add(new Field(name, new Schema(type, readFields(in))));
+            } else {
+                fields.add(new Field(name, null));
+            }
+        }
+
+        return fields;
+    }
+
+    @NotNull
+    private static Map<String, Object> readValues(@NotNull DataInputStream in, @NotNull List<Field> fields, int version) throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        for (Field field : fields) {
+            byte tag = in.readByte();
+
+            Object value = switch (tag) {
+                case EventRecorder.VALUE_NULL -> null;
+                case EventRecorder.VALUE_BOOLEAN -> in.readBoolean();
+                case EventRecorder.VALUE_LONG -> in.readLong();
+                case EventRecorder.VALUE_DOUBLE -> in.readDouble();
+                case EventRecorder.VALUE_STRING -> version == 1 ? in.readUTF() : readString(in);
+                case EventRecorder.VALUE_NESTED -> {
+                    if (field.nested() == null) throw new IOException("Event log is corrupted: unexpected nested value");
+                    yield new RecordedEvent(field.nested().type(), 0, readValues(in, field.nested().fields(), version));
+                }
+                default -> throw new IOException("Event log is corrupted: unknown value " + tag);
+            };
+
+            values.put(field.name(), value);
+        }
+
+        return values;
+    }
+
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("Event log is corrupted: negative string length");
+
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replays a chunk of events every time it runs, then reschedules itself until every event is replayed.
+     */
+    private final class Replay implements Runnable {
+        private final CompletableFuture<Report> result = new CompletableFuture<>();
+        private final Map<String, CallbackStats> stats = new HashMap<>();
+        private final List<RecordedEvent> events;
+        private final Set<Script> scripts;
+        private volatile TickTask task;
+        private int next = 0;
+        private int skipped = 0;
+        private long elapsed = 0;
+
+        private Replay(@NotNull List<RecordedEvent> events, @Nullable Set<Script> scripts) {
+            this.events = events;
+            this.scripts = scripts;
+        }
+
+        @Override
+        public void run() {
+            // The first tick can come before replay() stored the task when it is called off the main thread
+            if (task == null) return;
+
+            long start = System.nanoTime();
+            long deadline = tickScheduler.getTickDeadline();
+            replaying = true;
+
+            try {
+                // The scheduler only starts the job while budget is left, so a chunk ends the tick at the budget and not past it
+                while (next < events.size() && System.nanoTime() < deadline) {
+                    if (!registry.replay(events.get(next++), scripts, stats)) skipped++;
+                }
+            } catch (Throwable t) {
+                task.cancel();
+                result.completeExceptionally(t);
+                return;
+            } finally {
+                replaying = false;
+                elapsed += System.nanoTime() - start;
+            }
+
+            if (next < events.size()) return;
+            task.cancel();
+
+            List<CallbackReport> callbacks = new ArrayList<>();
+            stats.values().forEach(s -> callbacks.add(s.toReport()));
+            callbacks.sort(Comparator.comparingLong(CallbackReport::totalNanos).reversed());
+
+            long recordedNanos = events.isEmpty() ? 0 : events.getLast().getNanos();
+            result.complete(new Report(events.size(), skipped, recordedNanos, elapsed, List.copyOf(callbacks)));
+        }
+    }
+
+    private record Schema(@NotNull String type, @NotNull List<Field> fields) {
+    }
+
+    private record Field(@NotNull String name, @Nullable Schema nested) {
+    }
+
+    /**
+     * Accumulates the timings of one callback during a replay.
+     */
+    static final class CallbackStats {
+        private final String script;
+        private final String callback;
+        private final String event;
+        private long calls;
+        private long errors;
+        private long totalNanos;
+        private long maxNanos;
+
+        CallbackStats(@NotNull String script, @NotNull String callback, @NotNull String event) {
+            this.script = script;
+            this.callback = callback;
+            this.event = event;
+        }
+
+        void record(long nanos, boolean failed) {
+            calls++;
+            if (failed) errors++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        @NotNull
+        CallbackReport toReport() {
+            return new CallbackReport(script, callback, event, calls, errors, totalNanos, maxNanos);
+        }
+    }
+
+    /**
+     * The timings of one callback during a replay.
+     *
+     * @param script     The id of the script.
+     * @param callback   The name of the callback function.
+     * @param event      The simple name of the event.
+     * @param calls      The number of invocations.
+     * @param errors     The number of invocations that threw an error.
+     * @param totalNanos The total time spent in the callback.
+     * @param maxNanos   The longest single invocation.
+     */
+    public record CallbackReport(String script, String callback, String event, long calls, long errors, long totalNanos, long maxNanos) {
+
+        public long meanNanos() {
+            return calls == 0 ? 0 : totalNanos / calls;
+        }
+    }
+
+    /**
+     * The result of a replay.
+     *
+     * @param events        The number of events in the log.
+     * @param skipped       The number of events whose class is unknown to the {@link EventRegistry}.
+     * @param recordedNanos The time span covered by the recording.
+     * @param replayNanos   The time the replay took.
+     * @param callbacks     The timings of every invoked callback, slowest first.
+     */
+    public record Report(int events, int skipped, long recordedNanos, long replayNanos, List<CallbackReport> callbacks) {
+
+        public double eventsPerSecond() {
+            return replayNanos == 0 ? 0 : events * 1_000_000_000d / replayNanos;
+        }
+    }
+}
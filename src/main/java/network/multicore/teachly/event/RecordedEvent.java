@@ -0,0 +1,109 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2025, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.event;
+
+import com.google.common.base.Preconditions;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+import org.graalvm.polyglot.proxy.ProxyObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * A recorded event, or one of its captured nested objects, as seen by scripts during a replay.
+ * Every captured getter is exposed as a function returning the recorded value, so script code like
+ * {@code event.getPlayer().getName()} works unchanged.
+ */
+public class RecordedEvent implements ProxyObject {
+    private final String type;
+    private final long nanos;
+    private final Map<String, Object> values;
+
+    RecordedEvent(@NotNull String type, long nanos, @NotNull Map<String, Object> values) {
+        Preconditions.checkNotNull(type, "type");
+        Preconditions.checkNotNull(values, "values");
+
+        this.type = type;
+        this.nanos = nanos;
+        this.values = values;
+    }
+
+    /**
+     * Return the fully qualified name of the recorded event class.
+     *
+     * @return The event class name.
+     */
+    @NotNull
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Return when the event was recorded, relative to the start of the recording.
+     *
+     * @return The recording time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @NotNull
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public Object getMember(String key) {
+        if (!values.containsKey(key)) return null;
+
+        Object value = values.get(key);
+        return (ProxyExecutable) args -> value;
+    }
+
+    @Override
+    public Object getMemberKeys() {
+        return ProxyArray.fromArray(values.keySet().toArray());
+    }
+
+    @Override
+    public boolean hasMember(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public void putMember(String key, Value value) {
+        throw new UnsupportedOperationException("Recorded events are read-only");
+    }
+
+    @Override
+    public String toString() {
+        return type.substring(type.lastIndexOf('.') + 1) + values;
+    }
+}
@@ -32,7 +32,7 @@ import org.bukkit.event.HandlerList;
 import org.bukkit.event.player.PlayerEvent;
 import org.jetbrains.annotations.NotNull;
 
-public class WrongAnswerEvent extends PlayerEvent {
+public class WrongAnswerEvent extends PlayerEvent implements InternalEvent {
     private static final HandlerList HANDLERS = new HandlerList();
 
     public WrongAnswerEvent(@NotNull Player who) {
@@ -100,6 +100,11 @@ public class JavaScript implements Closeable {
         call(function, Void.class, args);
     }
 
+    @NotNull
+    Engine getEngine() {
+        return engine;
+    }
+
     @Override
     public void close() throws IOException {
         try {
@@ -29,19 +29,23 @@ package network.multicore.teachly.js;
 
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
+import net.kyori.adventure.text.Component;
 import network.multicore.mbcore.Text;
 import network.multicore.teachly.Teachly;
+import network.multicore.teachly.event.EventIndex;
 import network.multicore.teachly.event.EventRegistry;
+import network.multicore.teachly.event.EventReplay;
 import network.multicore.teachly.js.data.Exercise;
 import network.multicore.teachly.utils.Logger;
 import network.multicore.teachly.js.data.Result;
+import network.multicore.teachly.utils.TokenBucket;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.bukkit.event.Event;
+import org.graalvm.polyglot.Value;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Optional;
 import java.util.UUID;
+import java.util.logging.Level;
 
 public class PluginInterface {
     private static final Gson GSON = new Gson();
@@ -49,6 +53,7 @@ public class PluginInterface {
     private final Logger logger = Logger.getLogger();
     private final EventRegistry eventRegistry;
     private final Script script;
+    private volatile boolean throttling = false;
 
     public PluginInterface(@NotNull Teachly plugin, @NotNull Script script) {
         Preconditions.checkNotNull(plugin, "Plugin cannot be null");
@@ -65,8 +70,8 @@ public class PluginInterface {
      * @param msg The message to log.
      */
     public void info(Object msg) {
-        if (msg == null) return;
-        logger.info(msg.toString());
+        if (msg == null || isLogLimited()) return;
+        logger.logFrom(script.getId(), Level.INFO, msg.toString());
     }
 
     /**
@@ -75,8 +80,8 @@ public class PluginInterface {
      * @param msg The message to log.
      */
     public void warn(Object msg) {
-        if (msg == null) return;
-        logger.warn(msg.toString());
+        if (msg == null || isLogLimited()) return;
+        logger.logFrom(script.getId(), Level.WARNING, msg.toString());
     }
 
     /**
@@ -85,18 +90,21 @@ public class PluginInterface {
      * @param msg The message to log.
      */
     public void error(Object msg) {
-        if (msg == null) return;
-        logger.error(msg.toString());
+        if (msg == null || isLogLimited()) return;
+        logger.logFrom(script.getId(), Level.SEVERE, msg.toString());
     }
 
     /**
      * Execute an exercise.
+     * During an {@link EventReplay} the exercise is parsed but not executed.
      *
      * @param player   The player that will execute the exercise.
      * @param exercise The exercise to execute.
      * @return A {@link Result} indicating the success of the operation.
      */
     public Result<Void> exercise(Object player, String exercise) {
+        if (isRateLimited()) return Result.failure("rate limited");
+
         Player p;
         switch (player) {
             case Player player1 -> p = player1;
@@ -118,49 +126,57 @@ public class PluginInterface {
             return Result.failure("error parsing exercise");
         }
 
+        if (EventReplay.isReplaying()) return Result.success();
+
         e.execute(plugin, p);
+        plugin.logActivity("exercise", "script", script.getId(), "player", p.getUniqueId(), "exercise", e.id(), "name", e.name());
         return Result.success();
     }
 
     /**
      * Send a message to a player.
+     * Nothing is sent during an {@link EventReplay}.
      *
      * @param msg The message to send.
      * @param dst The {@link Player}, {@link UUID} or {@link String} to send the message to.
      * @return A {@link Result} indicating the success of the operation.
      */
     public Result<Void> sendMessage(String msg, Object dst) {
+        if (isRateLimited()) return Result.failure("rate limited");
+
         if (msg == null) {
             logger.warn("Script {} tried to send a null message to {}", script.getId(), dst);
             return Result.failure("message is null");
         }
 
+        if (EventReplay.isReplaying()) return Result.success();
+
         switch (dst) {
             case null -> {
                 logger.warn("Script {} tried to send a message to a null receiver", script.getId());
                 return Result.failure("destination is null");
             }
             case Player player -> {
-                Text.send(msg, player);
+                player.sendMessage(deserialize(msg));
                 return Result.success();
             }
             case UUID uuid -> {
                 Player player = Bukkit.getPlayer(uuid);
                 if (player == null) return Result.failure("player not found");
 
-                Text.send(msg, player);
+                player.sendMessage(deserialize(msg));
                 return Result.success();
             }
             case String dstStr -> {
                 if (dstStr.equalsIgnoreCase(Bukkit.getConsoleSender().getName())) {
-                    logger.info(msg);
+                    logger.logFrom(script.getId(), Level.INFO, msg);
                     return Result.success();
                 }
 
                 Player player = Bukkit.getPlayer(dstStr);
                 if (player == null) return Result.failure("player not found");
 
-                Text.send(msg, player);
+                player.sendMessage(deserialize(msg));
                 return Result.success();
             }
             default -> {
@@ -171,22 +187,29 @@ public class PluginInterface {
 
     /**
      * Broadcast a message to all players.
+     * Nothing is sent during an {@link EventReplay}.
      *
      * @param msg The message to broadcast.
      * @return A {@link Result} indicating the success of the operation.
      */
     public Result<Void> broadcast(String msg) {
+        if (isRateLimited()) return Result.failure("rate limited");
+
         if (msg == null) {
             logger.warn("Script {} tried to broadcast a null message", script.getId());
             return Result.failure("message is null");
         }
 
-        Text.broadcast(msg);
+        if (EventReplay.isReplaying()) return Result.success();
+
+        Component component = deserialize(msg);
+        Bukkit.getOnlinePlayers().forEach(player -> player.sendMessage(component));
         return Result.success();
     }
 
     /**
      * Register a new event listener.
+     * Subscriptions are not rate limited, as scripts usually make all of them at once while they are evaluated.
      *
      * @param event    The name of the event class to listen to.
      * @param callback The name of the callback function that will be called when the event is triggered.
@@ -204,8 +227,13 @@ public class PluginInterface {
             return Result.failure("callback is null");
         }
 
-        Optional<Class<? extends Event>> eventClass = eventRegistry.getEventClass(event);
-        if (eventClass.isEmpty()) {
+        EventIndex.Resolution resolution = eventRegistry.resolveEvent(event);
+        if (resolution.isAmbiguous()) {
+            logger.warn("<yellow>An error occurred while subscribing script {} to event {}. This name matches multiple events, use one of: {}", script.getId(), event, String.join(", ", resolution.candidates()));
+            return Result.failure("event is ambiguous");
+        }
+
+        if (!resolution.isResolved()) {
             logger.warn("<yellow>An error occurred while subscribing script {} to event {}. This event does not exist.", script.getId(), event);
             return Result.failure("event does not exist");
         }
@@ -213,10 +241,11 @@ public class PluginInterface {
         eventRegistry.registerListener(
                 script,
                 callback,
-                eventClass.get(),
+                resolution.event().get(),
                 eventRegistry.getEventPriority(priority)
         );
 
+        plugin.logActivity("subscribe", "script", script.getId(), "event", resolution.event().get().getName(), "callback", callback);
         return Result.success();
     }
 
@@ -230,4 +259,115 @@ public class PluginInterface {
     public Result<Void> subscribe(String event, String callback) {
         return subscribe(event, callback, null);
     }
+
+    /**
+     * Call a function once after a delay.
+     * The function is called on the main thread and the timer is cancelled when the script is unloaded.
+     *
+     * @param callback The function to call.
+     * @param millis   The delay in milliseconds.
+     * @return A {@link Result} containing the id of the timer.
+     */
+    public Result<Integer> setTimeout(Value callback, long millis) {
+        if (isRateLimited()) return Result.failure("rate limited");
+
+        if (callback == null || !callback.canExecute()) {
+            logger.warn("<yellow>Script {} tried to set a timeout without a valid function", script.getId());
+            return Result.failure("callback is not a function");
+        }
+
+        return Result.success(script.getTimers().setTimeout(callback, millis));
+    }
+
+    /**
+     * Call a function repeatedly.
+     * The function is called on the main thread and the timer is cancelled when the script is unloaded.
+     *
+     * @param callback The function to call.
+     * @param millis   The period in milliseconds.
+     * @return A {@link Result} containing the id of the timer.
+     */
+    public Result<Integer> setInterval(Value callback, long millis) {
+        if (isRateLimited()) return Result.failure("rate limited");
+
+        if (callback == null || !callback.canExecute()) {
+            logger.warn("<yellow>Script {} tried to set an interval without a valid function", script.getId());
+            return Result.failure("callback is not a function");
+        }
+
+        if (millis <= 0) {
+            logger.warn("<yellow>Script {} tried to set an interval with a period of {} ms", script.getId(), millis);
+            return Result.failure("period must be greater than 0");
+        }
+
+        return Result.success(script.getTimers().setInterval(callback, millis));
+    }
+
+    /**
+     * Call a function on the main thread after a number of server ticks.
+     * The timer is cancelled when the script is unloaded.
+     *
+     * @param callback The function to call.
+     * @param ticks    The number of ticks to wait.
+     * @return A {@link Result} containing the id of the timer.
+     */
+    public Result<Integer> runLater(Value callback, long ticks) {
+        if (isRateLimited()) return Result.failure("rate limited");
+
+        if (callback == null || !callback.canExecute()) {
+            logger.warn("<yellow>Script {} tried to run a task later without a valid function", script.getId());
+            return Result.failure("callback is not a function");
+        }
+
+        return Result.success(script.getTimers().runLater(callback, ticks));
+    }
+
+    /**
+     * Cancel a timer created with {@link #setTimeout}, {@link #setInterval} or {@link #runLater}.
+     *
+     * @param id The id of the timer.
+     * @return A {@link Result} indicating the success of the operation.
+     */
+    public Result<Void> clearTimer(int id) {
+        return script.getTimers().cancel(id) ? Result.success() : Result.failure("timer not found");
+    }
+
+    /**
+     * Take a token from the script's rate limiter. Called by every method with side effects, except subscriptions.
+     *
+     * @return True if the call must be rejected.
+     */
+    private boolean isRateLimited() {
+        TokenBucket rateLimiter = script.getRateLimiter();
+        if (rateLimiter == null || rateLimiter.tryAcquire()) {
+            throttling = false;
+            return false;
+        }
+
+        if (!throttling) {
+            throttling = true;
+            logger.warn("<yellow>Script {} is calling the plugin too often and is being rate limited", script.getId());
+        }
+
+        return true;
+    }
+
+    /**
+     * Take a token from the script's log limiter. Messages over the limit are dropped silently, they are counted by the limiter.
+     *
+     * @return True if the message must be dropped.
+     */
+    private boolean isLogLimited() {
+        TokenBucket logLimiter = script.getLogLimiter();
+        return logLimiter != null && !logLimiter.tryAcquire();
+    }
+
+    /**
+     * Deserialize a message sent by the script. Script messages usually hold dynamic values, such as player names or scores,
+     * so they are not cached: they would only push the plugin's constant messages out of the cache.
+     */
+    @NotNull
+    private static Component deserialize(@NotNull String msg) {
+        return Text.deserialize(msg, null, false);
+    }
 }
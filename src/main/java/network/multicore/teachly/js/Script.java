@@ -30,7 +30,10 @@ package network.multicore.teachly.js;
 import com.google.common.base.Preconditions;
 import network.multicore.teachly.Teachly;
 import network.multicore.teachly.js.exceptions.JSException;
+import network.multicore.teachly.utils.TokenBucket;
+import org.graalvm.polyglot.Value;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
 import java.io.File;
@@ -45,6 +48,9 @@ public class Script implements Closeable {
     private final Teachly plugin;
     private final PluginInterface pluginInterface;
     private final JavaScript js;
+    private final ScriptTimers timers;
+    private final TokenBucket rateLimiter;
+    private final TokenBucket logLimiter;
 
     public Script(@NotNull File file, @NotNull File scriptsDir, @NotNull Teachly plugin) {
         Preconditions.checkNotNull(file, "file");
@@ -57,6 +63,14 @@ public class Script implements Closeable {
         this.pkg = getPackage(file, scriptsDir);
         this.id = getId(file);
         this.plugin = plugin;
+        this.timers = new ScriptTimers(this, plugin.scheduler(), plugin.tickScheduler());
+
+        double rate = plugin.config().getDouble("script-rate-limit.rate", 20.0);
+        this.rateLimiter = rate > 0 ? new TokenBucket(rate, Math.max(plugin.config().getDouble("script-rate-limit.burst", 40.0), 1)) : null;
+
+        double logRate = plugin.config().getDouble("logging.script-logs-per-second", 10.0);
+        this.logLimiter = logRate > 0 ? new TokenBucket(logRate, Math.max(logRate, 1)) : null;
+
         this.pluginInterface = new PluginInterface(plugin, this);
         this.js = new JavaScript(pluginInterface);
     }
@@ -73,20 +87,74 @@ public class Script implements Closeable {
         return file;
     }
 
+    public ScriptTimers getTimers() {
+        return timers;
+    }
+
+    /**
+     * Return the limiter of the calls with side effects made by this script.
+     *
+     * @return The rate limiter, or null if rate limiting is disabled.
+     */
+    @Nullable
+    public TokenBucket getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Return the limiter of the messages logged by this script.
+     *
+     * @return The log limiter, or null if log limiting is disabled.
+     */
+    @Nullable
+    public TokenBucket getLogLimiter() {
+        return logLimiter;
+    }
+
     public void evaluate() throws JSException {
-        js.evaluate(file);
+        StallDetector.Invocation invocation = plugin.stallDetector().begin(this, js, "<main>", "evaluation");
+
+        try {
+            js.evaluate(file);
+        } finally {
+            plugin.stallDetector().end(invocation);
+        }
     }
 
     public <T> T call(@NotNull String function, @NotNull Class<T> returnType, Object... args) throws JSException {
-        return js.call(function, returnType, args);
+        StallDetector.Invocation invocation = plugin.stallDetector().begin(this, js, function, args.length > 0 ? args[0] : null);
+
+        try {
+            return js.call(function, returnType, args);
+        } finally {
+            plugin.stallDetector().end(invocation);
+        }
     }
 
     public void call(@NotNull String function, Object... args) throws JSException {
         call(function, Void.class, args);
     }
 
+    /**
+     * Call a function value of this script, such as a timer callback.
+     *
+     * @param function The function.
+     * @param name     The name reported if the call stalls.
+     * @param trigger  What triggered the call.
+     */
+    void execute(@NotNull Value function, @NotNull String name, @Nullable Object trigger) {
+        StallDetector.Invocation invocation = plugin.stallDetector().begin(this, js, name, trigger);
+
+        try {
+            function.executeVoid();
+        } finally {
+            plugin.stallDetector().end(invocation);
+        }
+    }
+
     @Override
     public void close() throws IOException {
+        timers.cancelAll();
         plugin.eventRegistry().unregisterListeners(this);
         if (js != null) js.close();
     }
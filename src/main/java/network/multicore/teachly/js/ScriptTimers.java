@@ -0,0 +1,190 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.js;
+
+import com.google.common.base.Preconditions;
+import network.multicore.teachly.Teachly;
+import network.multicore.teachly.concurrent.ScheduledTask;
+import network.multicore.teachly.concurrent.Scheduler;
+import network.multicore.teachly.concurrent.TickScheduler;
+import network.multicore.teachly.concurrent.TickTask;
+import network.multicore.teachly.utils.Logger;
+import org.graalvm.polyglot.Value;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The timers created by a script through {@link PluginInterface}.
+ * Timers are timed by the {@link Scheduler} and their callbacks always run on the main thread through the {@link TickScheduler},
+ * the same thread the script's event callbacks run on. All the timers are cancelled when the script is closed.
+ */
+public class ScriptTimers {
+    private final Logger logger = Logger.getLogger();
+    private final Script script;
+    private final Scheduler scheduler;
+    private final TickScheduler tickScheduler;
+    private final Map<Integer, Timer> timers = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    public ScriptTimers(@NotNull Script script, @NotNull Scheduler scheduler, @NotNull TickScheduler tickScheduler) {
+        Preconditions.checkNotNull(script, "script");
+        Preconditions.checkNotNull(scheduler, "scheduler");
+        Preconditions.checkNotNull(tickScheduler, "tickScheduler");
+
+        this.script = script;
+        this.scheduler = scheduler;
+        this.tickScheduler = tickScheduler;
+    }
+
+    /**
+     * Call a function once after a delay.
+     *
+     * @param callback The function to call.
+     * @param millis   The delay in milliseconds.
+     * @return The id of the timer.
+     */
+    public int setTimeout(@NotNull Value callback, long millis) {
+        Timer timer = new Timer(nextId.incrementAndGet(), "setTimeout", callback, false);
+        timers.put(timer.id, timer);
+        timer.task = scheduler.scheduleTask(timer::submit, Math.max(millis, 0), TimeUnit.MILLISECONDS, false);
+        return timer.id;
+    }
+
+    /**
+     * Call a function repeatedly.
+     * If the main thread is late and the previous call has not run yet, the next one is skipped.
+     *
+     * @param callback The function to call.
+     * @param millis   The period in milliseconds.
+     * @return The id of the timer.
+     */
+    public int setInterval(@NotNull Value callback, long millis) {
+        Preconditions.checkArgument(millis > 0, "Interval must be greater than 0");
+
+        Timer timer = new Timer(nextId.incrementAndGet(), "setInterval", callback, true);
+        timers.put(timer.id, timer);
+        timer.task = scheduler.scheduleTaskAtFixedRate(timer::submit, millis, millis, TimeUnit.MILLISECONDS, false);
+        return timer.id;
+    }
+
+    /**
+     * Call a function once after a number of server ticks.
+     *
+     * @param callback The function to call.
+     * @param ticks    The number of ticks to wait.
+     * @return The id of the timer.
+     */
+    public int runLater(@NotNull Value callback, long ticks) {
+        Timer timer = new Timer(nextId.incrementAndGet(), "runLater", callback, false);
+        timers.put(timer.id, timer);
+        timer.tickTask = tickScheduler.submitLater(timer::call, ticks);
+        return timer.id;
+    }
+
+    /**
+     * Cancel a timer.
+     *
+     * @param id The id of the timer.
+     * @return False if the timer does not exist or has already completed.
+     */
+    public boolean cancel(int id) {
+        Timer timer = timers.remove(id);
+        if (timer == null) return false;
+
+        timer.cancel();
+        return true;
+    }
+
+    /**
+     * Cancel every timer and prevent new ones from running.
+     */
+    public void cancelAll() {
+        closed = true;
+
+        timers.values().forEach(Timer::cancel);
+        timers.clear();
+    }
+
+    public int size() {
+        return timers.size();
+    }
+
+    private final class Timer {
+        private final int id;
+        private final String kind;
+        private final Value callback;
+        private final boolean periodic;
+        private final AtomicBoolean submitted = new AtomicBoolean(false);
+        private volatile ScheduledTask task;
+        private volatile TickTask tickTask;
+        private volatile boolean cancelled = false;
+
+        private Timer(int id, @NotNull String kind, @NotNull Value callback, boolean periodic) {
+            Preconditions.checkArgument(callback.canExecute(), "Timer callback must be a function");
+
+            this.id = id;
+            this.kind = kind;
+            this.callback = callback;
+            this.periodic = periodic;
+        }
+
+        private void submit() {
+            if (cancelled || closed || !submitted.compareAndSet(false, true)) return;
+            tickTask = tickScheduler.submit(this::call);
+        }
+
+        private void call() {
+            submitted.set(false);
+            if (cancelled || closed) return;
+            if (!periodic) timers.remove(id, this);
+
+            try {
+                script.execute(callback, "timer " + id, kind);
+            } catch (Throwable t) {
+                logger.warn("Error calling timer {} in script {}: {}", id, script.getId(), t.getMessage());
+                Teachly.getInstance().logActivity("error", "script", script.getId(), "stage", kind, "timer", id, "message", t.getMessage());
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+
+            ScheduledTask task = this.task;
+            if (task != null) task.cancel();
+
+            TickTask tickTask = this.tickTask;
+            if (tickTask != null) tickTask.cancel();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2023 - 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.js;
+
+import network.multicore.teachly.utils.Logger;
+import org.graalvm.polyglot.SourceSection;
+import org.graalvm.polyglot.management.ExecutionListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reports script callbacks that run for too long.
+ * A watcher thread checks the running callbacks periodically; when one exceeds the threshold, an execution listener is
+ * attached to its engine for a moment to find the function and line being executed, which are logged with the trigger of the callback.
+ */
+public class StallDetector {
+    private static final long CAPTURE_TIMEOUT_MILLIS = 200;
+    private final Logger logger = Logger.getLogger();
+    private final Set<Invocation> running = ConcurrentHashMap.newKeySet();
+    private final long thresholdNanos;
+    private final Thread watcher;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a stall detector.
+     *
+     * @param threshold The running time after which a callback is reported, 0 or less to disable the detector.
+     * @param unit      The unit of the threshold.
+     */
+    public StallDetector(long threshold, @NotNull TimeUnit unit) {
+        this.thresholdNanos = unit.toNanos(threshold);
+
+        if (thresholdNanos > 0) {
+            watcher = new Thread(this::watch, "Teachly Stall Detector");
+            watcher.setDaemon(true);
+            watcher.start();
+        } else {
+            watcher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return watcher != null && !closed;
+    }
+
+    public void close() {
+        closed = true;
+        if (watcher != null) watcher.interrupt();
+        running.clear();
+    }
+
+    /**
+     * Mark the start of a callback.
+     *
+     * @param script   The script running the callback.
+     * @param js       The engine of the script.
+     * @param callback The name of the callback.
+     * @param trigger  What triggered the callback, such as an event.
+     * @return The invocation to pass to {@link #end(Invocation)}, or null if the detector is disabled.
+     */
+    @Nullable
+    Invocation begin(@NotNull Script script, @NotNull JavaScript js, @NotNull String callback, @Nullable Object trigger) {
+        if (!isEnabled()) return null;
+
+        Invocation invocation = new Invocation(script, js, callback, trigger, System.nanoTime());
+        running.add(invocation);
+        return invocation;
+    }
+
+    void end(@Nullable Invocation invocation) {
+        if (invocation == null) return;
+
+        running.remove(invocation);
+        if (invocation.reported) {
+            logger.warn("<yellow>Callback {} of script {} returned after {} ms", invocation.callback, invocation.script.getId(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - invocation.startNanos));
+        }
+    }
+
+    private void watch() {
+        long interval = Math.max(TimeUnit.NANOSECONDS.toMillis(thresholdNanos) / 2, 5);
+
+        while (!closed) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            long now = System.nanoTime();
+            for (Invocation invocation : running) {
+                if (invocation.reported || now - invocation.startNanos < thresholdNanos) continue;
+
+                invocation.reported = true;
+                report(invocation);
+            }
+        }
+    }
+
+    private void report(@NotNull Invocation invocation) {
+        String location;
+
+        try {
+            location = capture(invocation);
+        } catch (Throwable t) {
+            location = "unknown location (" + t.getMessage() + ")";
+        }
+
+        logger.warn("<yellow>Callback {} of script {} has been running for {} ms, triggered by {}, at {}",
+                invocation.callback,
+                invocation.script.getId(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - invocation.startNanos),
+                describe(invocation.trigger),
+                location);
+    }
+
+    /**
+     * Find the guest function and line being executed by attaching a statement listener until the next statement runs.
+     */
+    @NotNull
+    private String capture(@NotNull Invocation invocation) {
+        CompletableFuture<String> location = new CompletableFuture<>();
+
+        ExecutionListener listener = ExecutionListener.newBuilder()
+                .statements(true)
+                .onEnter(event -> {
+                    if (location.isDone()) return;
+
+                    SourceSection section = event.getLocation();
+                    String root = event.getRootName() == null || event.getRootName().isEmpty() ? "<anonymous>" : event.getRootName();
+                    location.complete(section == null ? root : root + " (" + section.getSource().getName() + ":" + section.getStartLine() + ")");
+                })
+                .attach(invocation.js.getEngine());
+
+        try {
+            return location.get(CAPTURE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return "unknown location (not executing script code)";
+        } catch (Exception e) {
+            return "unknown location (" + e.getMessage() + ")";
+        } finally {
+            listener.close();
+        }
+    }
+
+    @NotNull
+    private static String describe(@Nullable Object trigger) {
+        if (trigger == null) return "nothing";
+        if (trigger instanceof String string) return string;
+        return trigger.getClass().getSimpleName();
+    }
+
+    static final class Invocation {
+        private final Script script;
+        private final JavaScript js;
+        private final String callback;
+        private final Object trigger;
+        private final long startNanos;
+        private volatile boolean reported = false;
+
+        private Invocation(@NotNull Script script, @NotNull JavaScript js, @NotNull String callback, @Nullable Object trigger, long startNanos) {
+            this.script = script;
+            this.js = js;
+            this.callback = callback;
+            this.trigger = trigger;
+            this.startNanos = startNanos;
+        }
+    }
+}
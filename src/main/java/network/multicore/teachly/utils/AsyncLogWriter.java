@@ -0,0 +1,175 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.utils;
+
+import net.kyori.adventure.text.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Background thread formatting and writing the records queued by {@link Logger} in asynchronous mode.
+ */
+final class AsyncLogWriter {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private final Logger logger;
+    private final LogRingBuffer buffer;
+    private final Logger.OverflowPolicy overflowPolicy;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean waiting = false;
+
+    AsyncLogWriter(Logger logger, int capacity, Logger.OverflowPolicy overflowPolicy) {
+        this.logger = logger;
+        this.buffer = new LogRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+
+        this.thread = new Thread(this::run, "Teachly Logger");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a record, applying the overflow policy if the buffer is full.
+     * Arguments that may be mutable or bound to the calling thread, such as script values, are converted to strings first.
+     */
+    void enqueue(Level level, LogTemplateCache templates, String source, String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        arg1 = freeze(arg1);
+        arg2 = freeze(arg2);
+        arg3 = freeze(arg3);
+        args = freeze(args);
+
+        if (!buffer.offer(level, templates, source, message, argCount, arg1, arg2, arg3, args)) {
+            switch (overflowPolicy) {
+                case DROP -> {
+                    dropped.increment();
+                    return;
+                }
+                case SYNC -> {
+                    logger.write(level, templates, source, message, argCount, arg1, arg2, arg3, args);
+                    return;
+                }
+                case BLOCK -> {
+                    while (!buffer.offer(level, templates, source, message, argCount, arg1, arg2, arg3, args)) {
+                        if (!running || Thread.currentThread() == thread) {
+                            logger.write(level, templates, source, message, argCount, arg1, arg2, arg3, args);
+                            return;
+                        }
+
+                        LockSupport.unpark(thread);
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+        }
+
+        if (waiting) LockSupport.unpark(thread);
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Stop the writer after writing every queued record.
+     *
+     * @param timeout The maximum time to wait for the queued records.
+     * @param unit    The unit of the timeout.
+     */
+    void close(long timeout, TimeUnit unit) {
+        running = false;
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running || !buffer.isEmpty()) {
+            if (buffer.poll(this::write)) continue;
+
+            logger.sweepDuplicates();
+
+            waiting = true;
+            if (buffer.isEmpty() && running) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            waiting = false;
+        }
+    }
+
+    private static Object freeze(Object arg) {
+        return switch (arg) {
+            case null -> null;
+            case String string -> string;
+            case Integer number -> number;
+            case Long number -> number;
+            case Double number -> number;
+            case Float number -> number;
+            case Short number -> number;
+            case Byte number -> number;
+            case Boolean bool -> bool;
+            case Character character -> character;
+            case Component component -> component;
+            default -> String.valueOf(arg);
+        };
+    }
+
+    private static Object[] freeze(Object[] args) {
+        if (args == null) return null;
+
+        Object[] frozen = args;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = freeze(args[i]);
+            if (arg == args[i]) continue;
+
+            // The caller's array is left untouched
+            if (frozen == args) frozen = args.clone();
+            frozen[i] = arg;
+        }
+
+        return frozen;
+    }
+
+    private void write(Level level, LogTemplateCache templates, String source, String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        try {
+            logger.write(level, templates, source, message, argCount, arg1, arg2, arg3, args);
+        } catch (Throwable t) {
+            // A record that cannot be formatted must not stop the writer
+            dropped.increment();
+        }
+    }
+}
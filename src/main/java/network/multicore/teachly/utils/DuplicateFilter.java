@@ -0,0 +1,147 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.utils;
+
+import net.kyori.adventure.text.Component;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * Collapses identical log lines coming from the same source.
+ * The first line of a window is written; the following identical ones are only counted until the window ends,
+ * then a single "repeated N times" summary is written. Only the most recent lines are tracked, in a small LRU.
+ */
+final class DuplicateFilter {
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final long windowNanos;
+    private final int maxEntries;
+    private final BiConsumer<Level, Component> writer;
+    private final LinkedHashMap<Key, Window> windows = new LinkedHashMap<>(16, 0.75f, true);
+    private long lastSweep = System.nanoTime();
+
+    /**
+     * @param windowNanos The length of the window in which identical lines are collapsed.
+     * @param maxEntries  The maximum number of distinct lines tracked.
+     * @param writer      Writes the summaries.
+     */
+    DuplicateFilter(long windowNanos, int maxEntries, @NotNull BiConsumer<Level, Component> writer) {
+        this.windowNanos = windowNanos;
+        this.maxEntries = maxEntries;
+        this.writer = writer;
+    }
+
+    /**
+     * Check whether a line must be written.
+     *
+     * @param source The source of the line, such as a script, or null if the line itself identifies its source.
+     * @param level  The level of the line.
+     * @param line   The line.
+     * @return False if the line is a repetition and must be dropped.
+     */
+    synchronized boolean accept(@Nullable String source, @NotNull Level level, @NotNull Component line) {
+        long now = System.nanoTime();
+        Key key = new Key(source, level, line);
+        Window window = windows.get(key);
+
+        if (window != null && now - window.start < windowNanos) {
+            window.repeated++;
+            return false;
+        }
+
+        if (window != null) {
+            summarize(key, window);
+            window.start = now;
+            window.repeated = 0;
+        } else {
+            windows.put(key, new Window(now));
+            evict();
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the summaries of the windows that have ended. Does nothing if the last sweep was less than a second ago.
+     */
+    synchronized void sweep() {
+        long now = System.nanoTime();
+        if (now - lastSweep < SWEEP_INTERVAL_NANOS) return;
+        lastSweep = now;
+
+        Iterator<Map.Entry<Key, Window>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Window> entry = iterator.next();
+            if (now - entry.getValue().start < windowNanos) continue;
+
+            summarize(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Write every pending summary.
+     */
+    synchronized void flush() {
+        windows.forEach(this::summarize);
+        windows.clear();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Window>> iterator = windows.entrySet().iterator();
+
+        while (windows.size() > maxEntries && iterator.hasNext()) {
+            Map.Entry<Key, Window> eldest = iterator.next();
+            summarize(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    private void summarize(@NotNull Key key, @NotNull Window window) {
+        if (window.repeated == 0) return;
+        writer.accept(key.level, key.line.append(Component.text(" (repeated " + window.repeated + (window.repeated == 1 ? " time)" : " times)"))));
+    }
+
+    private record Key(@Nullable String source, @NotNull Level level, @NotNull Component line) {
+    }
+
+    private static final class Window {
+        private long start;
+        private int repeated;
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+/**
+ * Bounded lock-free queue of log records with many producers and a single consumer.
+ * Slots are allocated once and reused, with room for three arguments so that most records need no array; a producer claims a slot with a CAS on the tail and publishes it through the slot sequence.
+ */
+final class LogRingBuffer {
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add a record, from any thread.
+     *
+     * @return False if the buffer is full.
+     */
+    boolean offer(Level level, LogTemplateCache templates, String source, String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Slot slot = slots[index];
+                    slot.level = level;
+                    slot.templates = templates;
+                    slot.source = source;
+                    slot.message = message;
+                    slot.argCount = argCount;
+                    slot.arg1 = arg1;
+                    slot.arg2 = arg2;
+                    slot.arg3 = arg3;
+                    slot.args = args;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest record and pass it to the consumer. Must only be called by the consumer thread.
+     *
+     * @return False if the buffer is empty.
+     */
+    boolean poll(Consumer consumer) {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) return false;
+
+        Slot slot = slots[index];
+        Level level = slot.level;
+        LogTemplateCache templates = slot.templates;
+        String source = slot.source;
+        String message = slot.message;
+        int argCount = slot.argCount;
+        Object arg1 = slot.arg1;
+        Object arg2 = slot.arg2;
+        Object arg3 = slot.arg3;
+        Object[] args = slot.args;
+
+        slot.level = null;
+        slot.templates = null;
+        slot.source = null;
+        slot.message = null;
+        slot.arg1 = null;
+        slot.arg2 = null;
+        slot.arg3 = null;
+        slot.args = null;
+        sequences.set(index, head + slots.length);
+        head++;
+
+        consumer.accept(level, templates, source, message, argCount, arg1, arg2, arg3, args);
+        return true;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    interface Consumer {
+        void accept(Level level, LogTemplateCache templates, String source, String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args);
+    }
+
+    private static final class Slot {
+        private Level level;
+        private LogTemplateCache templates;
+        private String source;
+        private String message;
+        private int argCount;
+        private Object arg1;
+        private Object arg2;
+        private Object arg3;
+        private Object[] args;
+    }
+}
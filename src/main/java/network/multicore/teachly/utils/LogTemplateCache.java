@@ -0,0 +1,163 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.utils;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.Style;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cache of log templates parsed to components.
+ * A template is parsed once and split into styled text parts, with its {} placeholders kept as literal text,
+ * so writing a record only formats the parts holding placeholders.
+ * Once full, templates are evicted in insertion order with a second chance: a template hit since the last pass is kept for another round,
+ * so the constant templates logged over and over outlive a burst of distinct messages.
+ */
+final class LogTemplateCache {
+    private final String prefix;
+    private final int maxSize;
+    private final Function<String, Component> renderer;
+    private final Map<String, Entry> templates = new ConcurrentHashMap<>();
+    private final Queue<String> clock = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * @param prefix   The MiniMessage tags prepended to every template, such as a color.
+     * @param maxSize  The maximum number of cached templates, 0 to parse every template on every call.
+     * @param renderer The function parsing a MiniMessage template.
+     */
+    LogTemplateCache(@NotNull String prefix, int maxSize, @NotNull Function<String, Component> renderer) {
+        this.prefix = prefix;
+        this.maxSize = maxSize;
+        this.renderer = renderer;
+    }
+
+    @NotNull
+    Template get(@NotNull String template) {
+        Entry entry = templates.get(template);
+        if (entry != null) {
+            if (!entry.referenced) entry.referenced = true;
+            return entry.template;
+        }
+
+        Template parsed = Template.parse(template, renderer.apply(prefix + template));
+        if (maxSize == 0) return parsed;
+
+        if (templates.putIfAbsent(template, new Entry(parsed)) == null) {
+            clock.add(template);
+            if (templates.size() > maxSize) evict();
+        }
+
+        return parsed;
+    }
+
+    int size() {
+        return templates.size();
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+
+        try {
+            // Every pass clears the bits it skips, so the loop ends after at most two rounds of the queue
+            String key;
+            while (templates.size() > maxSize && (key = clock.poll()) != null) {
+                Entry entry = templates.get(key);
+                if (entry == null) continue;
+
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    clock.add(key);
+                } else {
+                    templates.remove(key, entry);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final Template template;
+        private volatile boolean referenced = false;
+
+        private Entry(@NotNull Template template) {
+            this.template = template;
+        }
+    }
+
+    /**
+     * A parsed template.
+     *
+     * @param component    The parsed component, written as is when the record has no arguments.
+     * @param texts        The text of every part, with the placeholders kept, or null if the component has parts
+     *                     other than text, such as translations.
+     * @param parts        The component of every part, with its resolved style.
+     * @param placeholders Whether the template holds placeholders.
+     */
+    record Template(@NotNull Component component, @Nullable String[] texts, @Nullable Component[] parts, boolean placeholders) {
+
+        @NotNull
+        static Template parse(@NotNull String template, @NotNull Component component) {
+            List<String> texts = new ArrayList<>();
+            List<Component> parts = new ArrayList<>();
+
+            if (!flatten(component, Style.empty(), texts, parts)) return new Template(component, null, null, template.contains(Logger.PLACEHOLDER));
+
+            boolean placeholders = texts.stream().anyMatch(text -> text.contains(Logger.PLACEHOLDER));
+            return new Template(component, texts.toArray(String[]::new), parts.toArray(Component[]::new), placeholders);
+        }
+
+        private static boolean flatten(@NotNull Component component, @NotNull Style parent, @NotNull List<String> texts, @NotNull List<Component> parts) {
+            if (!(component instanceof TextComponent text)) return false;
+
+            Style style = component.style().merge(parent, Style.Merge.Strategy.IF_ABSENT_ON_TARGET);
+            if (!text.content().isEmpty()) {
+                texts.add(text.content());
+                parts.add(Component.text(text.content(), style));
+            }
+
+            for (Component child : component.children()) {
+                if (!flatten(child, style, texts, parts)) return false;
+            }
+
+            return true;
+        }
+    }
+}
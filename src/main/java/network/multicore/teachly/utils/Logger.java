@@ -28,25 +28,47 @@
 package network.multicore.teachly.utils;
 
 import com.google.common.base.Preconditions;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.logger.slf4j.ComponentLogger;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.serializer.ansi.ANSIComponentSerializer;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class Logger {
-    private static final ANSIComponentSerializer ANSI = ANSIComponentSerializer.builder().build();
     private static final MiniMessage MINI_MESSAGE = MiniMessage.builder().build();
-    private final java.util.logging.Logger logger;
+    static final String PLACEHOLDER = "{}";
+    private static final int MAX_BUILDER_CAPACITY = 8192;
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+    private static final int MAX_TRACKED_DUPLICATES = 128;
+    private final ComponentLogger logger;
+    private final LogTemplateCache plain = new LogTemplateCache("", MAX_CACHED_TEMPLATES, MINI_MESSAGE::deserialize);
+    private final LogTemplateCache yellow = new LogTemplateCache("<yellow>", MAX_CACHED_TEMPLATES, MINI_MESSAGE::deserialize);
+    private final LogTemplateCache red = new LogTemplateCache("<red>", MAX_CACHED_TEMPLATES, MINI_MESSAGE::deserialize);
+    // Messages logged by scripts are rarely constant, they are parsed on every call instead of filling the caches
+    private final LogTemplateCache scriptPlain = new LogTemplateCache("", 0, MINI_MESSAGE::deserialize);
+    private final LogTemplateCache scriptYellow = new LogTemplateCache("<yellow>", 0, MINI_MESSAGE::deserialize);
+    private final LogTemplateCache scriptRed = new LogTemplateCache("<red>", 0, MINI_MESSAGE::deserialize);
+    private volatile AsyncLogWriter async;
+    private volatile DuplicateFilter duplicates;
 
     private static Logger instance;
 
-    private Logger(java.util.logging.Logger logger) {
+    private Logger(ComponentLogger logger) {
         this.logger = logger;
     }
 
-    public static Logger createLogger(java.util.logging.Logger logger) {
+    /**
+     * Create the logger. Records are written as components, they are serialized to ANSI text only by the console appender.
+     *
+     * @param logger The component logger of the plugin.
+     * @return The logger.
+     */
+    public static Logger createLogger(ComponentLogger logger) {
         if (instance == null) instance = new Logger(logger);
         return instance;
     }
@@ -56,33 +78,332 @@ public class Logger {
         return instance;
     }
 
+    public void log(@NotNull Level level, String message) {
+        dispatch(level, plain, null, message, 0, null, null, null, null);
+    }
+
+    public void log(@NotNull Level level, String message, Object arg) {
+        dispatch(level, plain, null, message, 1, arg, null, null, null);
+    }
+
+    public void log(@NotNull Level level, String message, Object arg1, Object arg2) {
+        dispatch(level, plain, null, message, 2, arg1, arg2, null, null);
+    }
+
+    public void log(@NotNull Level level, String message, Object arg1, Object arg2, Object arg3) {
+        dispatch(level, plain, null, message, 3, arg1, arg2, arg3, null);
+    }
+
     public void log(@NotNull Level level, String message, Object... args) {
-        Preconditions.checkNotNull(level, "level");
-        if (message == null) return;
+        dispatch(level, plain, null, message, args == null ? 0 : args.length, null, null, null, args);
+    }
+
+    public void info(String message) {
+        dispatch(Level.INFO, plain, null, message, 0, null, null, null, null);
+    }
 
-        logger.log(level, ANSI.serialize(MINI_MESSAGE.deserialize(format(message, args))));
+    public void info(String message, Object arg) {
+        dispatch(Level.INFO, plain, null, message, 1, arg, null, null, null);
+    }
+
+    public void info(String message, Object arg1, Object arg2) {
+        dispatch(Level.INFO, plain, null, message, 2, arg1, arg2, null, null);
+    }
+
+    public void info(String message, Object arg1, Object arg2, Object arg3) {
+        dispatch(Level.INFO, plain, null, message, 3, arg1, arg2, arg3, null);
     }
 
     public void info(String message, Object... args) {
-        log(Level.INFO, message, args);
+        dispatch(Level.INFO, plain, null, message, args == null ? 0 : args.length, null, null, null, args);
+    }
+
+    public void warn(String message) {
+        dispatch(Level.WARNING, yellow, null, message, 0, null, null, null, null);
+    }
+
+    public void warn(String message, Object arg) {
+        dispatch(Level.WARNING, yellow, null, message, 1, arg, null, null, null);
+    }
+
+    public void warn(String message, Object arg1, Object arg2) {
+        dispatch(Level.WARNING, yellow, null, message, 2, arg1, arg2, null, null);
+    }
+
+    public void warn(String message, Object arg1, Object arg2, Object arg3) {
+        dispatch(Level.WARNING, yellow, null, message, 3, arg1, arg2, arg3, null);
     }
 
     public void warn(String message, Object... args) {
-        log(Level.WARNING, "<yellow>" + message, args);
+        dispatch(Level.WARNING, yellow, null, message, args == null ? 0 : args.length, null, null, null, args);
+    }
+
+    public void error(String message) {
+        dispatch(Level.SEVERE, red, null, message, 0, null, null, null, null);
+    }
+
+    public void error(String message, Object arg) {
+        dispatch(Level.SEVERE, red, null, message, 1, arg, null, null, null);
+    }
+
+    public void error(String message, Object arg1, Object arg2) {
+        dispatch(Level.SEVERE, red, null, message, 2, arg1, arg2, null, null);
+    }
+
+    public void error(String message, Object arg1, Object arg2, Object arg3) {
+        dispatch(Level.SEVERE, red, null, message, 3, arg1, arg2, arg3, null);
     }
 
     public void error(String message, Object... args) {
-        log(Level.SEVERE, "<red>" + message, args);
+        dispatch(Level.SEVERE, red, null, message, args == null ? 0 : args.length, null, null, null, args);
+    }
+
+    /**
+     * Log a message on behalf of a source, such as a script.
+     * Identical lines are collapsed per source, so the same line logged by two sources is not merged.
+     * The message is not cached as a template, as messages logged on behalf of scripts are rarely constant.
+     *
+     * @param source  The source of the message.
+     * @param level   The level.
+     * @param message The message.
+     */
+    public void logFrom(@NotNull String source, @NotNull Level level, String message) {
+        Preconditions.checkNotNull(source, "source");
+        Preconditions.checkNotNull(level, "level");
+
+        LogTemplateCache templates = level.intValue() >= Level.SEVERE.intValue() ? scriptRed : level.intValue() >= Level.WARNING.intValue() ? scriptYellow : scriptPlain;
+        dispatch(level, templates, source, message, 0, null, null, null, null);
+    }
+
+    /**
+     * Return whether records of the given level are written.
+     * Every log method checks this before formatting anything.
+     *
+     * @param level The level.
+     * @return True if the level is enabled.
+     */
+    public boolean isEnabled(@NotNull Level level) {
+        int value = level.intValue();
+
+        if (value >= Level.SEVERE.intValue()) return logger.isErrorEnabled();
+        if (value >= Level.WARNING.intValue()) return logger.isWarnEnabled();
+        if (value >= Level.INFO.intValue()) return logger.isInfoEnabled();
+        if (value >= Level.FINE.intValue()) return logger.isDebugEnabled();
+        return logger.isTraceEnabled();
+    }
+
+    /**
+     * Format and write records on a background thread instead of the calling one.
+     * Records are queued in a bounded ring buffer; when it is full the overflow policy decides what happens to new records.
+     *
+     * @param capacity       The number of records the buffer can hold, rounded up to a power of two.
+     * @param overflowPolicy What to do with records that do not fit in the buffer.
+     */
+    public synchronized void enableAsync(int capacity, @NotNull OverflowPolicy overflowPolicy) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be greater than 0");
+        Preconditions.checkNotNull(overflowPolicy, "overflowPolicy");
+
+        disableAsync();
+        async = new AsyncLogWriter(this, capacity, overflowPolicy);
+    }
+
+    /**
+     * Go back to writing records on the calling thread, after writing the queued ones.
+     */
+    public synchronized void disableAsync() {
+        AsyncLogWriter async = this.async;
+        if (async == null) return;
+
+        this.async = null;
+        async.close(5, TimeUnit.SECONDS);
+
+        DuplicateFilter duplicates = this.duplicates;
+        if (duplicates != null) duplicates.flush();
+    }
+
+    public boolean isAsync() {
+        return async != null;
+    }
+
+    /**
+     * Return the number of records dropped because the buffer was full, since asynchronous mode was enabled.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDroppedMessages() {
+        AsyncLogWriter async = this.async;
+        return async == null ? 0 : async.getDropped();
+    }
+
+    /**
+     * Collapse identical lines logged by the same source within a time window into a "repeated N times" summary.
+     *
+     * @param window The length of the window, 0 or less to write every line.
+     * @param unit   The unit of the window.
+     */
+    public synchronized void setDuplicateWindow(long window, @NotNull TimeUnit unit) {
+        Preconditions.checkNotNull(unit, "unit");
+
+        DuplicateFilter previous = duplicates;
+        duplicates = window > 0 ? new DuplicateFilter(unit.toNanos(window), MAX_TRACKED_DUPLICATES, this::log) : null;
+        if (previous != null) previous.flush();
     }
 
-    private static String format(String message, Object... args) {
-        if (args == null || args.length == 0) return message;
-        if (!message.contains("{}")) return message;
+    /**
+     * Build and write a record. The template is taken from the cache, so a message without arguments is
+     * written as is and only the placeholders are filled otherwise.
+     * Arguments are inserted as plain text, they are not parsed as MiniMessage.
+     */
+    void write(@NotNull Level level, @NotNull LogTemplateCache templates, String source, @NotNull String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        Component line = fill(templates.get(message), argCount, arg1, arg2, arg3, args);
 
-        try {
-            return message.replace("{}", "%S").formatted(Arrays.stream(args).map(arg -> arg == null ? "null" : arg.toString()).toArray());
-        } catch (Throwable t) {
-            throw new IllegalArgumentException("Missing arguments to format the string", t);
+        DuplicateFilter duplicates = this.duplicates;
+        if (duplicates == null) {
+            log(level, line);
+            return;
         }
+
+        if (duplicates.accept(source, level, line)) log(level, line);
+        duplicates.sweep();
+    }
+
+    /**
+     * Write the summaries of the collapsed lines whose window has ended. Called by the asynchronous writer when idle.
+     */
+    void sweepDuplicates() {
+        DuplicateFilter duplicates = this.duplicates;
+        if (duplicates != null) duplicates.sweep();
+    }
+
+    private void dispatch(@NotNull Level level, @NotNull LogTemplateCache templates, String source, String message, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        Preconditions.checkNotNull(level, "level");
+        if (message == null || !isEnabled(level)) return;
+
+        AsyncLogWriter async = this.async;
+        if (async != null) async.enqueue(level, templates, source, message, argCount, arg1, arg2, arg3, args);
+        else write(level, templates, source, message, argCount, arg1, arg2, arg3, args);
+    }
+
+    private void log(@NotNull Level level, @NotNull Component line) {
+        int value = level.intValue();
+
+        if (value >= Level.SEVERE.intValue()) logger.error(line);
+        else if (value >= Level.WARNING.intValue()) logger.warn(line);
+        else if (value >= Level.INFO.intValue()) logger.info(line);
+        else if (value >= Level.FINE.intValue()) logger.debug(line);
+        else logger.trace(line);
+    }
+
+    /**
+     * Replace every {} in the template with the next argument.
+     * The text parts of the template are formatted in a single pass over a reused builder, parts without placeholders
+     * are reused as they are. Templates with other parts, or records with component arguments, are filled by
+     * replacing the text in the component tree.
+     * Placeholders without an argument are left as they are and extra arguments are ignored.
+     * When args is not null it holds every argument, otherwise the arguments are arg1 to arg3.
+     */
+    @NotNull
+    static Component fill(@NotNull LogTemplateCache.Template template, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        if (argCount == 0 || !template.placeholders()) return template.component();
+
+        String[] texts = template.texts();
+        Component[] parts = template.parts();
+        if (texts == null || parts == null || hasComponent(argCount, arg1, arg2, arg3, args)) return replace(template.component(), argCount, arg1, arg2, arg3, args);
+
+        TextComponent.Builder line = Component.text();
+        StringBuilder builder = BUILDER.get();
+        int arg = 0;
+
+        for (int i = 0; i < texts.length; i++) {
+            if (arg == argCount || !texts[i].contains(PLACEHOLDER)) {
+                line.append(parts[i]);
+                continue;
+            }
+
+            builder.setLength(0);
+            arg = format(builder, texts[i], arg, argCount, arg1, arg2, arg3, args);
+            line.append(Component.text(builder.toString(), parts[i].style()));
+        }
+
+        if (builder.capacity() > MAX_BUILDER_CAPACITY) BUILDER.remove();
+        return line.build();
+    }
+
+    /**
+     * Append the text to the builder, replacing every {} with the next argument, in a single pass.
+     *
+     * @return The index of the next unused argument.
+     */
+    private static int format(@NotNull StringBuilder builder, @NotNull String text, int arg, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        int from = 0;
+        int placeholder = text.indexOf(PLACEHOLDER);
+
+        while (placeholder >= 0 && arg < argCount) {
+            builder.append(text, from, placeholder);
+            append(builder, arg(arg, arg1, arg2, arg3, args));
+
+            arg++;
+            from = placeholder + 2;
+            placeholder = text.indexOf(PLACEHOLDER, from);
+        }
+
+        builder.append(text, from, text.length());
+        return arg;
+    }
+
+    @NotNull
+    private static Component replace(@NotNull Component template, int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        int[] next = {0};
+        return template.replaceText(TextReplacementConfig.builder()
+                .matchLiteral(PLACEHOLDER)
+                .times(argCount)
+                .replacement(builder -> {
+                    Object arg = arg(next[0]++, arg1, arg2, arg3, args);
+                    return arg instanceof Component component ? component : Component.text(String.valueOf(arg));
+                })
+                .build());
+    }
+
+    private static boolean hasComponent(int argCount, Object arg1, Object arg2, Object arg3, Object[] args) {
+        for (int i = 0; i < argCount; i++) {
+            if (arg(i, arg1, arg2, arg3, args) instanceof Component) return true;
+        }
+
+        return false;
+    }
+
+    private static Object arg(int index, Object arg1, Object arg2, Object arg3, Object[] args) {
+        return args != null ? args[index] : index == 0 ? arg1 : index == 1 ? arg2 : arg3;
+    }
+
+    private static void append(@NotNull StringBuilder builder, Object arg) {
+        switch (arg) {
+            case null -> builder.append("null");
+            case String string -> builder.append(string);
+            case Integer integer -> builder.append(integer.intValue());
+            case Long number -> builder.append(number.longValue());
+            case Double number -> builder.append(number.doubleValue());
+            case Boolean bool -> builder.append(bool.booleanValue());
+            case Character character -> builder.append(character.charValue());
+            default -> builder.append(arg);
+        }
+    }
+
+    /**
+     * What to do with a record when the asynchronous buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the record and count it.
+         */
+        DROP,
+        /**
+         * Write the record on the calling thread.
+         */
+        SYNC,
+        /**
+         * Wait for the buffer to have room.
+         */
+        BLOCK
     }
 }
@@ -0,0 +1,443 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.utils;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Machine-readable log of script activity, written as JSON lines.
+ * Records are copied into a memory-mapped file, so writing one does not need a system call. A background thread flushes
+ * the file to disk every second and keeps the next file mapped in advance, so rotating only swaps the buffer records are
+ * copied into. Files are named name-1.jsonl, name-2.jsonl and so on, and only the most recent ones are kept.
+ * <p>
+ * If a file fills up before the next one is mapped, records are kept on the heap and copied to the next file as soon as it is;
+ * once too many records are waiting, writers wait briefly for the next file before dropping records.
+ * <p>
+ * Files are never renamed or truncated while mapped: every file has the full rotation size, and the unused space at its end
+ * is zero padding until the log is opened again, when it is trimmed. Readers tailing the current file must skip NUL bytes.
+ */
+public class StructuredLog implements Closeable {
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_OVERFLOW_BYTES = 1024 * 1024;
+    private static final long MAX_APPEND_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private final Logger logger = Logger.getLogger();
+    private final File dir;
+    private final String name;
+    private final Pattern fileName;
+    private final int maxFileSize;
+    private final int maxFiles;
+    private final Thread worker;
+    private final LongAdder dropped = new LongAdder();
+    private final List<Segment> retired = new ArrayList<>();
+    private final List<byte[]> overflow = new ArrayList<>();
+    private final int maxOverflowBytes;
+    private int overflowBytes = 0;
+    private Segment current;
+    private Segment next;
+    private long sequence;
+    private volatile boolean dirty = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Open a structured log. Files left by a previous run are trimmed, and a new file is started.
+     *
+     * @param dir         The directory of the files.
+     * @param name        The name of the files, without extension.
+     * @param maxFileSize The size at which the file is rotated, in bytes.
+     * @param maxFiles    The number of files kept, including the current one.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    public StructuredLog(@NotNull File dir, @NotNull String name, int maxFileSize, int maxFiles) throws IOException {
+        Preconditions.checkNotNull(dir, "dir");
+        Preconditions.checkNotNull(name, "name");
+        Preconditions.checkArgument(maxFileSize > 0, "Max file size must be greater than 0");
+        Preconditions.checkArgument(maxFiles > 0, "Max files must be greater than 0");
+
+        this.dir = dir;
+        this.name = name;
+        this.fileName = Pattern.compile(Pattern.quote(name) + "-(\\d+)\\.jsonl");
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.maxOverflowBytes = Math.min(maxFileSize, MAX_OVERFLOW_BYTES);
+
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create directory " + dir.getName());
+
+        for (File file : listFiles()) {
+            trim(file);
+            if (file.length() == 0) Files.deleteIfExists(file.toPath());
+            else sequence = Math.max(sequence, sequence(file));
+        }
+
+        current = Segment.open(file(++sequence), maxFileSize);
+        deleteOldFiles(sequence);
+
+        this.worker = new Thread(this::run, "Teachly Structured Log");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Write a record.
+     *
+     * @param type       The type of the record, such as "exercise" or "error".
+     * @param properties Alternating property names and values. Numbers and booleans are kept, other values are written as strings.
+     */
+    public void write(@NotNull String type, Object... properties) {
+        Preconditions.checkNotNull(type, "type");
+        Preconditions.checkArgument(properties.length % 2 == 0, "Properties must be name and value pairs");
+
+        JsonObject json = new JsonObject();
+        json.addProperty("time", Instant.now().toString());
+        json.addProperty("type", type);
+
+        for (int i = 0; i < properties.length; i += 2) {
+            String key = String.valueOf(properties[i]);
+            Object value = properties[i + 1];
+
+            switch (value) {
+                case null -> json.add(key, null);
+                case Number number -> json.addProperty(key, number);
+                case Boolean bool -> json.addProperty(key, bool);
+                default -> json.addProperty(key, value.toString());
+            }
+        }
+
+        append((json + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the number of records dropped because the log was closed, a record was larger than a file
+     * or the next file could not be mapped in time.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+
+        LockSupport.unpark(worker);
+
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void append(byte[] record) {
+        if (closed || record.length > maxFileSize) {
+            dropped.increment();
+            return;
+        }
+
+        long deadline = 0;
+
+        // While records are waiting for the next file, the following ones wait too, so they stay in order
+        while (overflowBytes > 0 || current.buffer.remaining() < record.length) {
+            if (next != null) {
+                retired.add(current);
+                current = next;
+                next = null;
+                LockSupport.unpark(worker);
+                continue;
+            }
+
+            LockSupport.unpark(worker);
+
+            // The worker has not mapped the next file yet: keep the record until it has
+            if (overflowBytes + record.length <= maxOverflowBytes) {
+                overflow.add(record);
+                overflowBytes += record.length;
+                return;
+            }
+
+            // Too many records are waiting already: wait briefly for the worker before dropping the record
+            long now = System.nanoTime();
+            if (deadline == 0) deadline = now + MAX_APPEND_WAIT_NANOS;
+            if (closed || now - deadline >= 0) {
+                dropped.increment();
+                return;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, deadline - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+                return;
+            }
+        }
+
+        current.buffer.put(record);
+        dirty = true;
+    }
+
+    private void run() {
+        long nextFlush = System.nanoTime() + FLUSH_INTERVAL_NANOS;
+
+        while (true) {
+            boolean closing = closed;
+            List<Segment> retired;
+            Segment current;
+            boolean prepare;
+
+            synchronized (this) {
+                retired = new ArrayList<>(this.retired);
+                this.retired.clear();
+                current = this.current;
+                prepare = next == null && (!closing || overflowBytes > 0);
+            }
+
+            // The next file is mapped before flushing the retired ones, as writers may be waiting for it
+            boolean rotated = prepare && !closing && prepareNext();
+
+            // Flushing happens outside the lock, so writers never wait for the disk
+            for (Segment segment : retired) segment.release(logger);
+
+            long now = System.nanoTime();
+            if (closing || now - nextFlush >= 0) {
+                nextFlush = now + FLUSH_INTERVAL_NANOS;
+
+                if (dirty) {
+                    dirty = false;
+                    current.force(logger);
+                }
+            }
+
+            if (closing) {
+                // Records still waiting for a file are written before closing
+                if (prepare) prepareNext();
+
+                List<Segment> segments;
+                synchronized (this) {
+                    segments = new ArrayList<>(this.retired);
+                    this.retired.clear();
+                    segments.add(this.current);
+                    if (next != null) segments.add(next);
+                    next = null;
+                }
+                for (Segment segment : segments) segment.release(logger);
+
+                return;
+            }
+
+            // After a rotation the next file is mapped right away, without waiting for the next flush
+            if (rotated) continue;
+            LockSupport.parkNanos(this, Math.max(nextFlush - System.nanoTime(), 0));
+        }
+    }
+
+    /**
+     * Map the file records go to once the current one is full, and delete the files beyond the maximum.
+     * If records are waiting because the current file filled up first, the new file becomes the current one right away.
+     *
+     * @return True if the new file became the current one.
+     */
+    private boolean prepareNext() {
+        long sequence = this.sequence + 1;
+        Segment segment;
+
+        try {
+            segment = Segment.open(file(sequence), maxFileSize);
+            this.sequence = sequence;
+        } catch (IOException e) {
+            logger.error("Could not create structured log file {}: {}", file(sequence).getName(), e.getMessage());
+            return false;
+        }
+
+        boolean rotated;
+        synchronized (this) {
+            rotated = overflowBytes > 0;
+
+            if (rotated) {
+                retired.add(current);
+                current = segment;
+
+                // At most maxOverflowBytes are waiting, which always fit in a new file
+                for (byte[] record : overflow) current.buffer.put(record);
+                overflow.clear();
+                overflowBytes = 0;
+                dirty = true;
+            } else {
+                next = segment;
+            }
+
+            notifyAll();
+        }
+
+        // Otherwise the current file has the previous sequence number
+        deleteOldFiles(rotated ? sequence : sequence - 1);
+        return rotated;
+    }
+
+    /**
+     * Delete the files older than the most recent ones. The next file, not written yet, is not counted.
+     */
+    private void deleteOldFiles(long currentSequence) {
+        for (File file : listFiles()) {
+            if (sequence(file) > currentSequence - maxFiles) continue;
+
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                // The file may still be mapped, it is deleted on a later rotation
+            }
+        }
+    }
+
+    @NotNull
+    private List<File> listFiles() {
+        List<File> files = new ArrayList<>();
+        File[] children = dir.listFiles();
+        if (children == null) return files;
+
+        for (File child : children) {
+            if (child.isFile() && fileName.matcher(child.getName()).matches()) files.add(child);
+        }
+
+        return files;
+    }
+
+    private long sequence(@NotNull File file) {
+        Matcher matcher = fileName.matcher(file.getName());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    @NotNull
+    private File file(long sequence) {
+        return new File(dir, name + "-" + sequence + ".jsonl");
+    }
+
+    /**
+     * Remove the zero padding left at the end of a file, reading it instead of mapping it.
+     */
+    private static void trim(@NotNull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = size;
+            ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+
+            search:
+            while (end > 0) {
+                int length = (int) Math.min(chunk.capacity(), end);
+                chunk.clear().limit(length);
+
+                long start = end - length;
+                while (chunk.hasRemaining()) {
+                    if (channel.read(chunk, start + chunk.position()) < 0) break;
+                }
+
+                for (int i = chunk.position() - 1; i >= 0; i--) {
+                    if (chunk.get(i) != 0) {
+                        end = start + i + 1;
+                        break search;
+                    }
+                }
+
+                end = start;
+            }
+
+            if (end < size) channel.truncate(end);
+        }
+    }
+
+    /**
+     * A mapped file.
+     */
+    private static final class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(@NotNull File file, @NotNull FileChannel channel, @NotNull MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        @NotNull
+        private static Segment open(@NotNull File file, int size) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            try {
+                return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private void force(@NotNull Logger logger) {
+            try {
+                buffer.force();
+            } catch (Exception e) {
+                logger.error("Could not flush structured log file {}: {}", file.getName(), e.getMessage());
+            }
+        }
+
+        /**
+         * Flush the file and close its channel. The mapping stays valid until it is garbage collected.
+         */
+        private void release(@NotNull Logger logger) {
+            force(logger);
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error("Could not close structured log file {}: {}", file.getName(), e.getMessage());
+            }
+        }
+    }
+}
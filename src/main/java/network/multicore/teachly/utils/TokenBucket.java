@@ -0,0 +1,87 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2024, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.utils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Token bucket rate limiter.
+ * The bucket holds up to burst tokens and is refilled continuously at the given rate; every permitted call takes one token.
+ */
+public class TokenBucket {
+    private final double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+    private long permitted;
+    private long throttled;
+
+    /**
+     * Create a full token bucket.
+     *
+     * @param ratePerSecond The number of tokens added every second.
+     * @param burst         The maximum number of tokens, i.e. the number of calls permitted at once.
+     */
+    public TokenBucket(double ratePerSecond, double burst) {
+        Preconditions.checkArgument(ratePerSecond > 0, "Rate must be greater than 0");
+        Preconditions.checkArgument(burst >= 1, "Burst must be at least 1");
+
+        this.ratePerNano = ratePerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take a token if one is available.
+     *
+     * @return True if the call is permitted, false if it must be throttled.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+
+        if (tokens >= 1) {
+            tokens--;
+            permitted++;
+            return true;
+        }
+
+        throttled++;
+        return false;
+    }
+
+    public synchronized long getPermitted() {
+        return permitted;
+    }
+
+    public synchronized long getThrottled() {
+        return throttled;
+    }
+}
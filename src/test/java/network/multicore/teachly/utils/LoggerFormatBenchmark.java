@@ -0,0 +1,89 @@
+/*
+ * BSD 3-Clause License
+ * Copyright (c) 2025, Lorenzo Magni & Kevin Delugan.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package network.multicore.teachly.utils;
+
+import com.sun.management.ThreadMXBean;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the time and the bytes allocated per call when filling a 3-argument log template, with the cached single-pass
+ * formatter of {@link Logger} and with the previous String.format and MiniMessage path.
+ * Exits with status 1 if the formatter allocates more than half of what the previous path does, so it can guard against regressions.
+ * <p>
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=network.multicore.teachly.utils.LoggerFormatBenchmark}
+ */
+public final class LoggerFormatBenchmark {
+    private static final String TEMPLATE = "Script {} is calling the plugin too often: {} calls in {} ms";
+    private static final int WARMUP = 200_000;
+    private static final int CALLS = 1_000_000;
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.builder().build();
+    private static volatile Object sink;
+
+    private LoggerFormatBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        LogTemplateCache cache = new LogTemplateCache("<yellow>", 16, MINI_MESSAGE::deserialize);
+
+        Result current = measure(i -> Logger.fill(cache.get(TEMPLATE), 3, "quiz", i, 1000L, null));
+        Result previous = measure(i -> MINI_MESSAGE.deserialize("<yellow>" + TEMPLATE.replace("{}", "%S")
+                .formatted(Arrays.stream(new Object[]{"quiz", i, 1000L}).map(String::valueOf).toArray())));
+
+        System.out.printf("single pass:   %6.0f bytes/call, %6.0f ns/call%n", current.bytesPerCall(), current.nanosPerCall());
+        System.out.printf("String.format: %6.0f bytes/call, %6.0f ns/call%n", previous.bytesPerCall(), previous.nanosPerCall());
+
+        if (current.bytesPerCall() > previous.bytesPerCall() / 2) {
+            System.err.println("The single pass formatter allocates more than half of what String.format does");
+            System.exit(1);
+        }
+    }
+
+    private static Result measure(IntFunction<Component> call) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+
+        for (int i = 0; i < WARMUP; i++) sink = call.apply(i);
+
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < CALLS; i++) sink = call.apply(i);
+
+        long nanos = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+        return new Result((double) bytes / CALLS, (double) nanos / CALLS);
+    }
+
+    private record Result(double bytesPerCall, double nanosPerCall) {
+    }
+}